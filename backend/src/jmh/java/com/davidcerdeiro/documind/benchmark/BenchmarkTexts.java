@@ -0,0 +1,45 @@
+package com.davidcerdeiro.documind.benchmark;
+
+import java.util.Random;
+
+// Deterministic text shaped like the chunks the splitter produces: windows of CHUNK_WORDS words over a document,
+// each one starting with the last OVERLAP_WORDS words of the previous one.
+final class BenchmarkTexts {
+
+    static final int CHUNK_WORDS = 220;
+
+    static final int OVERLAP_WORDS = 40;
+
+    private static final String[] VOCABULARY = ("the contract term renewal payment invoice supplier customer delivery warranty clause "
+            + "liability notice period termination agreement party shall within days written consent service level report "
+            + "quarter revenue growth margin cost budget forecast risk compliance audit policy data protection security "
+            + "incident response employee training schedule project milestone approval review document version section")
+            .split(" ");
+
+    private BenchmarkTexts() {
+    }
+
+    static String chunk(int document, int index) {
+        Random random = new Random(document * 1_000_003L);
+        int start = index * (CHUNK_WORDS - OVERLAP_WORDS);
+        for (int i = 0; i < start; i++) {
+            random.nextInt(VOCABULARY.length);
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < CHUNK_WORDS; i++) {
+            if (i > 0) {
+                text.append((start + i) % 17 == 0 ? ". " : " ");
+            }
+            text.append(VOCABULARY[random.nextInt(VOCABULARY.length)]);
+        }
+        return text.append('.').toString();
+    }
+
+    static String question(Random random, int words) {
+        StringBuilder question = new StringBuilder("what does the");
+        for (int i = 0; i < words; i++) {
+            question.append(' ').append(VOCABULARY[random.nextInt(VOCABULARY.length)]);
+        }
+        return question.append('?').toString();
+    }
+}
@@ -0,0 +1,112 @@
+package com.davidcerdeiro.documind.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.InjectMocks;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.davidcerdeiro.documind.service.DocumentService;
+import com.davidcerdeiro.documind.service.ParallelPdfReader;
+import com.davidcerdeiro.documind.service.StageMetrics;
+import com.davidcerdeiro.documind.service.TextNormalizer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Ingestion without Ollama or Postgres: the whole chunkingDocument path on the sample PDF (parallel extraction,
+// cleaning and splitting), and the TokenTextSplitter stage alone on its already extracted and cleaned pages.
+// Times are per document (all of its pages). Cleaning on its own is in NormalizationBenchmark.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkingBenchmark {
+
+    // Same settings as application.yml
+    private static final int CHUNK_SIZE = 300;
+
+    private static final int CHUNK_OVERLAP = 50;
+
+    private static final String EXTRACTOR = "parallel";
+
+    private static final int PAGES_PER_RANGE = 16;
+
+    private static final boolean DEHYPHENATE = true;
+
+    private static final boolean STRIP_HEADERS = true;
+
+    @Spy
+    private StageMetrics stageMetrics = new StageMetrics(new SimpleMeterRegistry());
+
+    // Only the app.document settings of the read, clean and split stages matter for chunking
+    @InjectMocks
+    private DocumentService documentService;
+
+    private Resource pdf;
+
+    private List<Document> pages;
+
+    private List<Document> cleanPages;
+
+    // extraction-threads: 0, one per core
+    private ForkJoinPool extractionPool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(documentService, "chunkSize", CHUNK_SIZE);
+        ReflectionTestUtils.setField(documentService, "chunkOverlap", CHUNK_OVERLAP);
+        ReflectionTestUtils.setField(documentService, "dehyphenate", DEHYPHENATE);
+        ReflectionTestUtils.setField(documentService, "stripHeaders", STRIP_HEADERS);
+        ReflectionTestUtils.setField(documentService, "extractor", EXTRACTOR);
+        ReflectionTestUtils.setField(documentService, "pagesPerRange", PAGES_PER_RANGE);
+        extractionPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        ReflectionTestUtils.setField(documentService, "extractionPool", extractionPool);
+
+        pdf = new ClassPathResource("pdfs/sample-test.pdf");
+        pages = new ArrayList<>();
+        new ParallelPdfReader(pdf, extractionPool, PAGES_PER_RANGE).read(pages::add);
+        TextNormalizer normalizer = new TextNormalizer(DEHYPHENATE, STRIP_HEADERS);
+        cleanPages = new ArrayList<>(pages.size());
+        for (Document page : pages) {
+            cleanPages.add(new Document(normalizer.normalize(page.getText()), page.getMetadata()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        extractionPool.shutdown();
+    }
+
+    @Benchmark
+    public List<Document> chunkingDocument() {
+        return documentService.chunkingDocument(pdf);
+    }
+
+    @Benchmark
+    public List<Document> splitText() {
+        return new TokenTextSplitter(CHUNK_SIZE, CHUNK_OVERLAP, 5, 10000, true).split(cleanPages);
+    }
+}
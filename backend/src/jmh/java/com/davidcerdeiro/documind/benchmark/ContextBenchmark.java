@@ -0,0 +1,67 @@
+package com.davidcerdeiro.documind.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+
+import com.davidcerdeiro.documind.service.ContextBuilder;
+import com.davidcerdeiro.documind.service.ContextBuilder.BuiltContext;
+import com.davidcerdeiro.documind.service.DocumentService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Prompt context assembly done by promptModel before calling the model: merging neighbouring chunks,
+// dropping near-duplicates and packing into the token budget. The retrieved chunks come from a few documents,
+// with runs of consecutive chunks and some repeated passages, as in real retrievals.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextBenchmark {
+
+    // 8 is what reaches the prompt after re-ranking, 50 a re-ranking disabled over-fetch
+    @Param({ "8", "50" })
+    public int chunks;
+
+    private ContextBuilder contextBuilder;
+
+    private List<Document> retrieved;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        contextBuilder = new ContextBuilder(new SimpleMeterRegistry(), 1500, 20, 0.9);
+        retrieved = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            int document = i % 3;
+            // Consecutive chunks of each document, every fourth one a copy of the chunk retrieved before it
+            int index = i % 4 == 3 ? (i - 3) / 3 : i / 3;
+            retrieved.add(Document.builder()
+                    .id("chunk-" + i)
+                    .text(BenchmarkTexts.chunk(document, index))
+                    .metadata(Map.of(DocumentService.METADATA_DOCUMENT_ID, "doc-" + document, DocumentService.METADATA_CHUNK_INDEX, index))
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public BuiltContext buildContext() {
+        return contextBuilder.build(retrieved);
+    }
+}
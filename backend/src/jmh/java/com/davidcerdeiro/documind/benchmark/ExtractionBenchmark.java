@@ -0,0 +1,88 @@
+package com.davidcerdeiro.documind.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import com.davidcerdeiro.documind.service.PageStreamingReader;
+import com.davidcerdeiro.documind.service.ParallelPdfReader;
+
+// Reading a whole PDF page by page: Tika on one thread against ParallelPdfReader on a pool of one thread per core.
+// The document is the sample PDF repeated `copies` times and spooled to a file, like an upload waiting for its job.
+// One operation is one document.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtractionBenchmark {
+
+    @Param({ "10" })
+    public int copies;
+
+    @Param({ "4", "16" })
+    public int pagesPerRange;
+
+    private Path file;
+
+    private Resource document;
+
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("extraction-benchmark", ".pdf");
+        byte[] sample = new ClassPathResource("pdfs/sample-test.pdf").getContentAsByteArray();
+        PDFMergerUtility merger = new PDFMergerUtility();
+        try (PDDocument merged = new PDDocument()) {
+            for (int i = 0; i < copies; i++) {
+                try (PDDocument copy = Loader.loadPDF(sample)) {
+                    merger.appendDocument(merged, copy);
+                }
+            }
+            merged.save(file.toFile());
+        }
+        document = new FileSystemResource(file);
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void tika(Blackhole blackhole) {
+        new PageStreamingReader(document).read(blackhole::consume);
+    }
+
+    @Benchmark
+    public void parallel(Blackhole blackhole) {
+        new ParallelPdfReader(document, pool, pagesPerRange).read(blackhole::consume);
+    }
+}
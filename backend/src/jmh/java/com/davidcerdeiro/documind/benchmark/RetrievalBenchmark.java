@@ -0,0 +1,174 @@
+package com.davidcerdeiro.documind.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+
+import com.davidcerdeiro.documind.service.DocumentService;
+import com.davidcerdeiro.documind.service.LexicalReranker;
+import com.davidcerdeiro.documind.service.ReciprocalRankFusion;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// The in-process part of retrieval: a topK candidate search over an in-memory store, the lexical re-ranking
+// down to the prompt chunks and the reciprocal rank fusion of hybrid search. The embedding model is a stub that
+// hashes words into a 768 dimension vector, so Ollama latency stays out of the numbers and texts sharing
+// words still land close to each other.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RetrievalBenchmark {
+
+    private static final int DIMENSIONS = 768;
+
+    // Same as DocumentService
+    private static final int TOP_K = 8;
+
+    private static final int CANDIDATES = 50;
+
+    @Param({ "5000" })
+    public int chunks;
+
+    private SimpleVectorStore vectorStore;
+
+    private LexicalReranker reranker;
+
+    private List<String> questions;
+
+    private List<Document> candidates;
+
+    private List<Document> lexicalRanking;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // SimpleVectorStore logs every document it embeds
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(SimpleVectorStore.class)).setLevel(ch.qos.logback.classic.Level.WARN);
+        vectorStore = SimpleVectorStore.builder(new HashingEmbeddingModel()).build();
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            int document = i / 100;
+            int index = i % 100;
+            documents.add(Document.builder()
+                    .id("chunk-" + i)
+                    .text(BenchmarkTexts.chunk(document, index))
+                    .metadata(Map.of(DocumentService.METADATA_DOCUMENT_ID, "doc-" + document, DocumentService.METADATA_CHUNK_INDEX, index))
+                    .build());
+        }
+        vectorStore.add(documents);
+
+        reranker = new LexicalReranker(new SimpleMeterRegistry(), 0.5);
+        Random random = new Random(42);
+        questions = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            questions.add(BenchmarkTexts.question(random, 3 + random.nextInt(5)));
+        }
+        candidates = search(questions.get(0));
+        // A second ranking over the same candidates in another order, as the full-text search would return
+        lexicalRanking = new ArrayList<>(candidates);
+        Collections.shuffle(lexicalRanking, random);
+    }
+
+    @Benchmark
+    public List<Document> similaritySearch() {
+        return search(nextQuestion());
+    }
+
+    @Benchmark
+    public List<Document> rerank() {
+        return reranker.rerank(questions.get(0), candidates, TOP_K);
+    }
+
+    @Benchmark
+    public List<Document> reciprocalRankFusion() {
+        return ReciprocalRankFusion.fuse(60, TOP_K, candidates, lexicalRanking);
+    }
+
+    @Benchmark
+    public List<Document> searchAndRerank() {
+        String question = nextQuestion();
+        return reranker.rerank(question, search(question), TOP_K);
+    }
+
+    private List<Document> search(String question) {
+        return vectorStore.similaritySearch(SearchRequest.builder().query(question).topK(CANDIDATES).build());
+    }
+
+    private String nextQuestion() {
+        return questions.get(next++ & (questions.size() - 1));
+    }
+
+    // Feature hashing of the lower-cased words, L2-normalised
+    static class HashingEmbeddingModel implements EmbeddingModel {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            List<String> texts = request.getInstructions();
+            for (int i = 0; i < texts.size(); i++) {
+                embeddings.add(new Embedding(embed(texts.get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(String text) {
+            float[] vector = new float[DIMENSIONS];
+            for (String word : text.toLowerCase().split("\\W+")) {
+                if (!word.isEmpty()) {
+                    int hash = word.hashCode();
+                    vector[Math.floorMod(hash, DIMENSIONS)] += (hash & 1) == 0 ? 1 : -1;
+                }
+            }
+            double norm = 0;
+            for (float value : vector) {
+                norm += value * value;
+            }
+            if (norm > 0) {
+                float scale = (float) (1 / Math.sqrt(norm));
+                for (int i = 0; i < vector.length; i++) {
+                    vector[i] *= scale;
+                }
+            }
+            return vector;
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return DIMENSIONS;
+        }
+    }
+}
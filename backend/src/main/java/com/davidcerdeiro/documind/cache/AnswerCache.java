@@ -0,0 +1,141 @@
+package com.davidcerdeiro.documind.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.davidcerdeiro.documind.service.CorpusVersion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Semantic cache of model answers. An answer is reused when a new question was retrieved the same set of
+// chunks as a previous one and both question embeddings are within maxDistance (cosine distance).
+// "No information found" outcomes are cached as a null answer. Answers are grouped by chunk set in an LRU
+// of maxEntries groups, each keeping the last questionsPerContext questions.
+// Answers are dropped as soon as the shared corpus version changes (a write through any replica, see CorpusVersion),
+// and after ttl in any case, as a backstop.
+@Component
+public class AnswerCache {
+
+    private final LruCache<String, List<CachedAnswer>> answers;
+
+    private final CorpusVersion corpusVersion;
+
+    private final double maxDistance;
+
+    private final int questionsPerContext;
+
+    private final long ttlNanos;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    public AnswerCache(CorpusVersion corpusVersion, MeterRegistry meterRegistry,
+            @Value("${app.cache.answer.max-entries:500}") int maxEntries,
+            @Value("${app.cache.answer.questions-per-context:16}") int questionsPerContext,
+            @Value("${app.cache.answer.max-distance:0.05}") double maxDistance,
+            @Value("${app.cache.answer.ttl:1h}") Duration ttl) {
+        this.answers = new LruCache<>(maxEntries);
+        this.corpusVersion = corpusVersion;
+        this.maxDistance = maxDistance;
+        this.questionsPerContext = questionsPerContext;
+        this.ttlNanos = ttl.toNanos();
+        this.hits = counter(meterRegistry, "hit");
+        this.misses = counter(meterRegistry, "miss");
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("documind.answer.cache")
+                .description("Answers served from the semantic cache or generated by the chat model")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    // Key of the retrieved chunk set, independent of the order the chunks came back in
+    public static String contextKey(List<Document> documents) {
+        return TextFingerprint.sha256(documents.stream().map(Document::getId).sorted().toArray(String[]::new));
+    }
+
+    // Closest cached answer for the question, or null if none is close enough for the current corpus
+    public CachedAnswer find(float[] questionEmbedding, String contextKey) {
+        List<CachedAnswer> candidates = answers.get(contextKey);
+        CachedAnswer best = null;
+        double bestDistance = maxDistance;
+
+        if (candidates != null) {
+            long version = corpusVersion.current();
+            long now = System.nanoTime();
+            synchronized (candidates) {
+                for (CachedAnswer candidate : candidates) {
+                    double distance = cosineDistance(questionEmbedding, candidate.questionEmbedding());
+                    if (candidate.corpusVersion() == version && !expired(candidate, now) && distance <= bestDistance) {
+                        best = candidate;
+                        bestDistance = distance;
+                    }
+                }
+            }
+        }
+
+        (best != null ? hits : misses).increment();
+        return best;
+    }
+
+    // answer is null when the model found no information. version is the corpus version read before retrieval.
+    public void put(float[] questionEmbedding, String contextKey, String answer, long version) {
+        if (version != corpusVersion.current()) {
+            return;
+        }
+
+        List<CachedAnswer> candidates;
+        synchronized (answers) {
+            candidates = answers.get(contextKey);
+            if (candidates == null) {
+                candidates = new ArrayList<>();
+                answers.put(contextKey, candidates);
+            }
+        }
+        synchronized (candidates) {
+            long now = System.nanoTime();
+            candidates.removeIf(candidate -> candidate.corpusVersion() != version || expired(candidate, now));
+            if (candidates.size() >= questionsPerContext) {
+                candidates.remove(0);
+            }
+            candidates.add(new CachedAnswer(questionEmbedding, answer, version, now));
+        }
+    }
+
+    private boolean expired(CachedAnswer candidate, long now) {
+        return now - candidate.cachedAt() > ttlNanos;
+    }
+
+    public void clear() {
+        answers.clear();
+    }
+
+    private static double cosineDistance(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return Double.MAX_VALUE;
+        }
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        if (normA == 0 || normB == 0) {
+            return Double.MAX_VALUE;
+        }
+        return 1 - dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+
+    // cachedAt is a System.nanoTime() reading
+    public record CachedAnswer(float[] questionEmbedding, String answer, long corpusVersion, long cachedAt) {}
+}
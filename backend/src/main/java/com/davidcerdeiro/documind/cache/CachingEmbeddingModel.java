@@ -0,0 +1,171 @@
+package com.davidcerdeiro.documind.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+
+import com.davidcerdeiro.documind.repository.EmbeddingCacheRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Embedding model decorator that reuses the vectors of chunks that were already embedded.
+// Document embeddings (the path used by VectorStore.add) are looked up by a hash of the normalized text
+// and the model name, first in an in-memory LRU and then in the embedding_cache table.
+// Only the misses reach the real model. Plain requests (question embeddings) have an in-memory LRU of their own,
+// so a burst of distinct questions can't evict the chunk embeddings an ingestion is about to reuse.
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+
+    private final String modelName;
+
+    private final LruCache<String, float[]> memoryCache;
+
+    private final LruCache<String, float[]> queryCache;
+
+    private final EmbeddingCacheRepository repository;
+
+    private final Counter memoryHits;
+
+    private final Counter databaseHits;
+
+    private final Counter misses;
+
+    private final Counter queryHits;
+
+    private final Counter queryMisses;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, String modelName, int memoryEntries, int queryEntries,
+            EmbeddingCacheRepository repository, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.modelName = modelName;
+        this.memoryCache = new LruCache<>(memoryEntries);
+        this.queryCache = new LruCache<>(queryEntries);
+        this.repository = repository;
+        this.memoryHits = counter(meterRegistry, "hit", "memory");
+        this.databaseHits = counter(meterRegistry, "hit", "database");
+        this.misses = counter(meterRegistry, "miss", "none");
+        this.queryHits = queryCounter(meterRegistry, "hit");
+        this.queryMisses = queryCounter(meterRegistry, "miss");
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result, String tier) {
+        return Counter.builder("documind.embedding.cache")
+                .description("Chunk embeddings served from the cache or computed by the model")
+                .tag("result", result)
+                .tag("tier", tier)
+                .register(meterRegistry);
+    }
+
+    private static Counter queryCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("documind.query.embedding.cache")
+                .description("Question embeddings served from memory or computed by the model")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<float[]> embed(List<Document> documents, EmbeddingOptions options, BatchingStrategy batchingStrategy) {
+        float[][] embeddings = new float[documents.size()][];
+        // Cache key -> positions in the batch that need it (identical chunks inside one batch are embedded once)
+        Map<String, List<Integer>> missing = new LinkedHashMap<>();
+
+        for (int i = 0; i < documents.size(); i++) {
+            String key = cacheKey(documents.get(i).getText());
+            float[] cached = memoryCache.get(key);
+            if (cached != null) {
+                embeddings[i] = cached;
+                memoryHits.increment();
+            } else {
+                missing.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            repository.findAll(missing.keySet()).forEach((key, embedding) -> {
+                memoryCache.put(key, embedding);
+                missing.remove(key).forEach(i -> embeddings[i] = embedding);
+                databaseHits.increment();
+            });
+        }
+
+        if (!missing.isEmpty()) {
+            List<Document> toEmbed = missing.values().stream().map(positions -> documents.get(positions.get(0))).toList();
+            List<float[]> computed = delegate.embed(toEmbed, options, batchingStrategy);
+
+            Map<String, float[]> newEmbeddings = new HashMap<>();
+            int index = 0;
+            for (Map.Entry<String, List<Integer>> entry : missing.entrySet()) {
+                float[] embedding = computed.get(index++);
+                entry.getValue().forEach(i -> embeddings[i] = embedding);
+                memoryCache.put(entry.getKey(), embedding);
+                newEmbeddings.put(entry.getKey(), embedding);
+            }
+            repository.saveAll(modelName, newEmbeddings);
+            misses.increment(toEmbed.size());
+        }
+
+        return List.of(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(List.of(document), EmbeddingOptions.builder().build(), new TokenCountBatchingStrategy()).get(0);
+    }
+
+    // Question embeddings: kept in their own in-memory LRU only, they are not worth a row in embedding_cache
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        float[][] embeddings = new float[texts.size()][];
+        List<Integer> missing = new ArrayList<>();
+
+        for (int i = 0; i < texts.size(); i++) {
+            embeddings[i] = queryCache.get(cacheKey(texts.get(i)));
+            if (embeddings[i] == null) {
+                missing.add(i);
+            }
+        }
+        queryHits.increment(texts.size() - missing.size());
+
+        if (!missing.isEmpty()) {
+            List<String> toEmbed = missing.stream().map(texts::get).toList();
+            EmbeddingResponse response = delegate.call(new EmbeddingRequest(toEmbed, request.getOptions()));
+            for (int i = 0; i < missing.size(); i++) {
+                float[] embedding = response.getResults().get(i).getOutput();
+                embeddings[missing.get(i)] = embedding;
+                queryCache.put(cacheKey(toEmbed.get(i)), embedding);
+            }
+            queryMisses.increment(missing.size());
+        }
+
+        List<Embedding> results = new ArrayList<>(embeddings.length);
+        for (int i = 0; i < embeddings.length; i++) {
+            results.add(new Embedding(embeddings[i], i));
+        }
+        return new EmbeddingResponse(results);
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    // Hash of the model name and the normalized text,
+    // so chunks that only differ in spacing or line endings share the same vector
+    public String cacheKey(String text) {
+        return TextFingerprint.sha256(modelName, TextFingerprint.normalize(text));
+    }
+}
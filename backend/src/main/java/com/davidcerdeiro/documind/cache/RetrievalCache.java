@@ -0,0 +1,69 @@
+package com.davidcerdeiro.documind.cache;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.davidcerdeiro.documind.service.CorpusVersion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Cache of similarity search results by question, so repeated questions skip both the question
+// embedding and the pgvector query. Entries expire after the TTL and are ignored as soon as the corpus
+// changes, through this replica or any other (see CorpusVersion).
+@Component
+public class RetrievalCache {
+
+    private final LruCache<String, CachedResult> results;
+
+    private final CorpusVersion corpusVersion;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    public RetrievalCache(CorpusVersion corpusVersion, MeterRegistry meterRegistry,
+            @Value("${app.cache.retrieval.max-entries:1000}") int maxEntries,
+            @Value("${app.cache.retrieval.ttl:10m}") Duration ttl) {
+        this.results = new LruCache<>(maxEntries, ttl);
+        this.corpusVersion = corpusVersion;
+        this.hits = counter(meterRegistry, "hit");
+        this.misses = counter(meterRegistry, "miss");
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("documind.retrieval.cache")
+                .description("Similarity searches served from the cache or run against the vector store")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    // Cached result for the key, or null if there is none for the current corpus version
+    public List<Document> get(String key) {
+        CachedResult cached = results.get(key);
+        if (cached == null || cached.corpusVersion() != corpusVersion.current()) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cached.documents();
+    }
+
+    // version is the corpus version read before the search started. If a write happened in the meantime
+    // the result may already be stale, so it is not cached.
+    public void put(String key, List<Document> documents, long version) {
+        if (version == corpusVersion.current()) {
+            results.put(key, new CachedResult(version, List.copyOf(documents)));
+        }
+    }
+
+    public void clear() {
+        results.clear();
+    }
+
+    private record CachedResult(long corpusVersion, List<Document> documents) {}
+}
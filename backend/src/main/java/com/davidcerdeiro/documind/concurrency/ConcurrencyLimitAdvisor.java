@@ -0,0 +1,57 @@
+package com.davidcerdeiro.documind.concurrency;
+
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.core.Ordered;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+// ChatClient advisor that holds a slot of the Ollama limiter while the chat model is generating.
+// For streamed answers the slot is kept until the stream completes, fails or is cancelled by the client.
+// The stream only reaches the advisor once it is subscribed, after the response has started, so callers that
+// want a busy model to be a 503 take the slot beforehand and pass it as the SLOT param: the advisor then
+// leaves it to them. Without one the advisor waits for a slot off the subscribing thread, and a rejection
+// arrives as an error of the stream.
+public class ConcurrencyLimitAdvisor implements CallAdvisor, StreamAdvisor {
+
+    // Advisor param with the ConcurrencyLimiter.Slot the caller holds for a streamed answer
+    public static final String SLOT = "documind.concurrency.slot";
+
+    private final ConcurrencyLimiter limiter;
+
+    public ConcurrencyLimitAdvisor(ConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+        return limiter.call(() -> chain.nextCall(request));
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest request, StreamAdvisorChain chain) {
+        if (request.context().get(SLOT) instanceof ConcurrencyLimiter.Slot) {
+            return chain.nextStream(request);
+        }
+        return Mono.fromCallable(limiter::acquireSlot)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(slot -> chain.nextStream(request).doFinally(signal -> slot.close()));
+    }
+
+    @Override
+    public String getName() {
+        return "ConcurrencyLimitAdvisor";
+    }
+
+    // Right before the call to the model, so other advisors don't run while holding the slot
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 1;
+    }
+}
@@ -0,0 +1,45 @@
+package com.davidcerdeiro.documind.concurrency;
+
+import java.util.List;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+// Embedding model decorator that takes a slot of the Ollama limiter for every call to the model.
+// Document embeddings come from the ingestion jobs and wait for a slot, question embeddings
+// come from a user request and give up after the acquire timeout.
+public class ConcurrencyLimitedEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+
+    private final ConcurrencyLimiter limiter;
+
+    public ConcurrencyLimitedEmbeddingModel(EmbeddingModel delegate, ConcurrencyLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public List<float[]> embed(List<Document> documents, EmbeddingOptions options, BatchingStrategy batchingStrategy) {
+        return limiter.callWaiting(() -> delegate.embed(documents, options, batchingStrategy));
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return limiter.callWaiting(() -> delegate.embed(document));
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return limiter.call(() -> delegate.call(request));
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+}
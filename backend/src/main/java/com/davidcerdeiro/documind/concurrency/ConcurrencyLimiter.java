@@ -0,0 +1,115 @@
+package com.davidcerdeiro.documind.concurrency;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import com.davidcerdeiro.documind.exception.ServiceBusyException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Caps the number of concurrent calls to a downstream resource (Ollama, pgvector).
+// Threads are cheap once request handling runs on virtual threads, so without this every request
+// would go straight to the resource and the overload would just move there.
+// Interactive calls wait at most acquireTimeout and then fail with a 503, background work waits its turn.
+public class ConcurrencyLimiter {
+
+    private final String resource;
+
+    private final int maxConcurrent;
+
+    private final Semaphore permits;
+
+    private final Duration acquireTimeout;
+
+    private final Counter rejected;
+
+    public ConcurrencyLimiter(String resource, int maxConcurrent, Duration acquireTimeout, MeterRegistry meterRegistry) {
+        this.resource = resource;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        // Fair, so a burst of new requests can't starve the ones already waiting
+        this.permits = new Semaphore(this.maxConcurrent, true);
+        this.acquireTimeout = acquireTimeout;
+
+        Gauge.builder("documind.concurrency.active", permits, p -> this.maxConcurrent - p.availablePermits())
+                .description("Calls in progress against the resource")
+                .tag("resource", resource)
+                .register(meterRegistry);
+        Gauge.builder("documind.concurrency.waiting", permits, Semaphore::getQueueLength)
+                .description("Calls waiting for a free slot")
+                .tag("resource", resource)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("documind.concurrency.rejected")
+                .description("Calls rejected because no slot freed up within the acquire timeout")
+                .tag("resource", resource)
+                .register(meterRegistry);
+    }
+
+    // For request handling: fails with ServiceBusyException if no slot frees up within the acquire timeout
+    public <T> T call(Supplier<T> action) {
+        acquire();
+        try {
+            return action.get();
+        } finally {
+            release();
+        }
+    }
+
+    // For background work (ingestion): waits as long as it takes
+    public <T> T callWaiting(Supplier<T> action) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + resource, e);
+        }
+        try {
+            return action.get();
+        } finally {
+            release();
+        }
+    }
+
+    // acquire/release are exposed for calls that outlive the calling method, like a streamed answer
+    public void acquire() {
+        try {
+            if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new ServiceBusyException("Too many concurrent requests to " + resource, Math.max(1, acquireTimeout.toSeconds()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + resource, e);
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    // Same as acquire, for a slot that is handed over to whatever ends up releasing it
+    public Slot acquireSlot() {
+        acquire();
+        return new Slot();
+    }
+
+    // Closing it more than once releases the slot once
+    public final class Slot implements AutoCloseable {
+
+        private final AtomicBoolean held = new AtomicBoolean(true);
+
+        private Slot() {
+        }
+
+        @Override
+        public void close() {
+            if (held.getAndSet(false)) {
+                release();
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.davidcerdeiro.documind.concurrency;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Runs at most one computation per key at a time: callers asking for a key while its computation is in flight
+// wait for it and get its result (or its failure) instead of starting their own.
+// Nothing is kept once the computation finishes, remembering results is the caches' job; this only covers the
+// burst of identical requests that arrives before the first one has filled them.
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter executed;
+
+    private final Counter coalesced;
+
+    public SingleFlight(String operation, MeterRegistry meterRegistry) {
+        this.executed = requests(meterRegistry, operation, "executed");
+        this.coalesced = requests(meterRegistry, operation, "coalesced");
+        Gauge.builder("documind.coalescing.in.flight", inFlight, ConcurrentHashMap::size)
+                .description("Computations other identical requests can attach to")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String operation, String outcome) {
+        return Counter.builder("documind.coalescing.requests")
+                .description("Requests that ran their own computation or attached to an identical one in flight")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    public V call(K key, Supplier<V> computation) {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, own);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+
+        executed.increment();
+        try {
+            V value = computation.get();
+            own.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    // Rethrows the failure of the computation as it was thrown, instead of the CompletionException wrapper
+    private static <V> V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -1,14 +1,20 @@
 package com.davidcerdeiro.documind.configuration;
 
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import com.davidcerdeiro.documind.concurrency.ConcurrencyLimitAdvisor;
+import com.davidcerdeiro.documind.concurrency.ConcurrencyLimiter;
+
 @Configuration
 public class ChatClientConfig {
 
     @Bean
-    ChatClient chatClient(ChatClient.Builder builder) {
-        return builder.build();
+    ChatClient chatClient(ChatClient.Builder builder, @Qualifier("ollamaLimiter") ConcurrencyLimiter ollamaLimiter) {
+        return builder
+                .defaultAdvisors(new ConcurrencyLimitAdvisor(ollamaLimiter))
+                .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,42 @@
+package com.davidcerdeiro.documind.configuration;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.davidcerdeiro.documind.concurrency.ConcurrencyLimiter;
+import com.davidcerdeiro.documind.concurrency.SingleFlight;
+import com.davidcerdeiro.documind.dto.ChatResponse;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Configuration
+public class ConcurrencyConfig {
+
+    // Chat and embedding calls to Ollama. Ollama queues what it can't run anyway (OLLAMA_NUM_PARALLEL),
+    // so a request waiting here costs nothing downstream and can still be rejected with a 503.
+    @Bean
+    ConcurrencyLimiter ollamaLimiter(MeterRegistry meterRegistry,
+            @Value("${app.concurrency.ollama.max-concurrent:8}") int maxConcurrent,
+            @Value("${app.concurrency.ollama.acquire-timeout:30s}") Duration acquireTimeout) {
+        return new ConcurrencyLimiter("ollama", maxConcurrent, acquireTimeout, meterRegistry);
+    }
+
+    // Similarity searches against pgvector. Keep it below the connection pool size,
+    // so ingestion and the caches can still get a connection.
+    @Bean
+    ConcurrencyLimiter pgvectorLimiter(MeterRegistry meterRegistry,
+            @Value("${app.concurrency.pgvector.max-concurrent:8}") int maxConcurrent,
+            @Value("${app.concurrency.pgvector.acquire-timeout:10s}") Duration acquireTimeout) {
+        return new ConcurrencyLimiter("pgvector", maxConcurrent, acquireTimeout, meterRegistry);
+    }
+
+    // Chat questions: identical questions arriving while the first one is still being answered wait for its answer
+    // instead of running their own search and model call, see DocumentFacade.promptModel
+    @Bean
+    SingleFlight<String, ChatResponse> chatSingleFlight(MeterRegistry meterRegistry) {
+        return new SingleFlight<>("chat", meterRegistry);
+    }
+}
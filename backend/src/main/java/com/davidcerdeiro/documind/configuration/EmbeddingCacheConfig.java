@@ -0,0 +1,49 @@
+package com.davidcerdeiro.documind.configuration;
+
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import com.davidcerdeiro.documind.cache.CachingEmbeddingModel;
+import com.davidcerdeiro.documind.concurrency.ConcurrencyLimitedEmbeddingModel;
+import com.davidcerdeiro.documind.concurrency.ConcurrencyLimiter;
+import com.davidcerdeiro.documind.repository.EmbeddingCacheRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Configuration
+public class EmbeddingCacheConfig {
+
+    // Wraps whatever EmbeddingModel is in the context (Ollama, or the local model used by the tests),
+    // so the pgvector store picks up the cached model without redefining its auto-configuration.
+    // The concurrency limit sits under the cache, cache hits don't take a slot.
+    @Bean
+    static BeanPostProcessor cachingEmbeddingModelPostProcessor(Environment environment,
+            ObjectProvider<EmbeddingCacheRepository> repository, ObjectProvider<MeterRegistry> meterRegistry,
+            @Qualifier("ollamaLimiter") ObjectProvider<ConcurrencyLimiter> ollamaLimiter) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof EmbeddingModel model) || bean instanceof CachingEmbeddingModel
+                        || bean instanceof ConcurrencyLimitedEmbeddingModel) {
+                    return bean;
+                }
+
+                EmbeddingModel limited = new ConcurrencyLimitedEmbeddingModel(model, ollamaLimiter.getObject());
+                if (!environment.getProperty("app.cache.embedding.enabled", Boolean.class, true)) {
+                    return limited;
+                }
+
+                String modelName = environment.getProperty("spring.ai.ollama.embedding.options.model", model.getClass().getSimpleName());
+                int memoryEntries = environment.getProperty("app.cache.embedding.memory-entries", Integer.class, 5000);
+                int queryEntries = environment.getProperty("app.cache.embedding.query-entries", Integer.class, 1000);
+
+                return new CachingEmbeddingModel(limited, modelName, memoryEntries, queryEntries, repository.getObject(), meterRegistry.getObject());
+            }
+        };
+    }
+}
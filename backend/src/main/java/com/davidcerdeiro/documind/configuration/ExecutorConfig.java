@@ -0,0 +1,95 @@
+package com.davidcerdeiro.documind.configuration;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class ExecutorConfig {
+
+    // Same switch Spring Boot uses for Tomcat and the default @Async executor
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // Executor that runs the embedding batches of the ingestion jobs.
+    // The number of batches in flight is limited in DocumentService, so the pool only needs that many threads.
+    @Bean
+    AsyncTaskExecutor embeddingExecutor(@Value("${app.document.max-concurrent-batches:4}") int maxConcurrentBatches) {
+        return executor("embedding-", maxConcurrentBatches);
+    }
+
+    // Executor for the parsing stage of the ingestion pipeline (reading, cleaning and splitting; with the parallel
+    // extractor the pages of a PDF are extracted on extractionPool while this thread waits for them in order).
+    // One thread per document being parsed, the embedding stage runs on embeddingExecutor.
+    // 0 threads means one per core.
+    @Bean
+    AsyncTaskExecutor parsingExecutor(@Value("${app.document.parsing-threads:0}") int parsingThreads) {
+        return executor("parsing-", perCore(parsingThreads));
+    }
+
+    // Pool the page ranges of PDFs are extracted on (ParallelPdfReader), shared by every document being parsed so
+    // the extraction of several uploads together doesn't take more than extraction-threads cores (0 means one per core).
+    // Extraction is CPU-bound and never blocks, so it stays on platform threads even with virtual threads enabled.
+    @Bean(destroyMethod = "shutdown")
+    ForkJoinPool extractionPool(@Value("${app.document.extraction-threads:0}") int extractionThreads) {
+        return new ForkJoinPool(perCore(extractionThreads), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("extraction-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    // Runs the ingestion jobs taken from IngestionQueue, which already keeps at most `workers` of them running.
+    // A finishing job starts the next one from its own thread, so this must never block on a concurrency limit.
+    @Bean
+    AsyncTaskExecutor ingestionExecutor(@Value("${app.ingestion.workers:2}") int workers) {
+        return executor("ingestion-", virtualThreads ? SimpleAsyncTaskExecutor.UNBOUNDED_CONCURRENCY : workers);
+    }
+
+    // Runs the files of a bulk upload, batch-parallelism of them at once (0 means one per core).
+    // Each file waits here for its parsing and embedding stages, which run on the executors above.
+    @Bean
+    AsyncTaskExecutor batchExecutor(@Value("${app.ingestion.batch-parallelism:0}") int parallelism) {
+        return executor("batch-", perCore(parallelism));
+    }
+
+    // Runs the lexical half of hybrid searches next to the vector query made by the request thread
+    @Bean
+    AsyncTaskExecutor retrievalExecutor(@Value("${app.retrieval.threads:8}") int threads) {
+        return executor("retrieval-", threads);
+    }
+
+    private static int perCore(int threads) {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    // With virtual threads there is no pool: one new virtual thread per task, at most `threads` at once.
+    // Tasks run with the context of the thread that submitted them, so the trace id of a request (or of the
+    // upload that started an ingestion job) follows it to the Ollama and pgvector calls and into the logs.
+    private AsyncTaskExecutor executor(String threadNamePrefix, int threads) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+            executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(threads);
+            executor.setTaskTerminationTimeout(30_000);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+}
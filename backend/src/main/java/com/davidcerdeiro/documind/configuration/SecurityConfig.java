@@ -1,11 +1,13 @@
 package com.davidcerdeiro.documind.configuration;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -16,6 +18,13 @@ import java.util.List;
 @EnableWebSecurity
 public class SecurityConfig {
 
+    // Actuator endpoints are served on their own port, which the Kubernetes Service doesn't route
+    @Value("${management.server.port:${server.port:8080}}")
+    private int managementPort;
+
+    @Value("${server.port:8080}")
+    private int serverPort;
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
@@ -27,12 +36,19 @@ public class SecurityConfig {
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/api/**").permitAll()    
                 .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll() 
+                .requestMatchers("/actuator/health/**").permitAll()
+                // Metrics (Prometheus scrapes the pod directly) only on the management port, never on the public one
+                .requestMatchers(managementPortRequest()).permitAll()
                 .anyRequest().authenticated()                  
             );
 
         return http.build();
     }
 
+    private RequestMatcher managementPortRequest() {
+        return request -> managementPort != serverPort && request.getLocalPort() == managementPort;
+    }
+
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
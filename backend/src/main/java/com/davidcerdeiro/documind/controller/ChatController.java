@@ -1,6 +1,8 @@
 package com.davidcerdeiro.documind.controller;
 
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -10,6 +12,8 @@ import com.davidcerdeiro.documind.dto.ChatRequest;
 import com.davidcerdeiro.documind.dto.ChatResponse;
 import com.davidcerdeiro.documind.facade.DocumentFacade;
 
+import reactor.core.publisher.Flux;
+
 @RestController
 @RequestMapping("/api/chat")
 public class ChatController {
@@ -20,13 +24,28 @@ public class ChatController {
         this.documentFacade = documentFacade;
     }
     //Endpoint to ask to the model
+    // Optional "collection" and "documentIds" restrict the search to those documents
     // Responses:
-    // 200 OK: Question successfully answered
+    // 200 OK: Question successfully answered (cached = true when served from the answer cache)
     // 404 Not Found: If the ask doesn't have info related in the document
     @PostMapping
     public ResponseEntity<ChatResponse> askModel(@RequestBody ChatRequest request) {
-        String answer = documentFacade.promptModel(request.question());
+        ChatResponse response = documentFacade.promptModel(request);
+
+        return ResponseEntity.ok(response);
+    }
 
-        return ResponseEntity.ok(new ChatResponse(answer));
+    //Endpoint to ask to the model, streaming the answer as Server-Sent Events
+    // Events:
+    // token: Part of the answer, in generation order
+    // done: The answer is complete (status 200)
+    // not-found: The model found no information for the question (status 404)
+    // Responses:
+    // 404 Not Found: If the ask doesn't have info related in the document (before any event is sent)
+    // 503 Service Unavailable: If the model is busy, with Retry-After (before any event is sent)
+    @PostMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamModel(@RequestBody ChatRequest request) {
+        return documentFacade.streamPromptModel(request)
+                .map(event -> ServerSentEvent.builder(event.data()).event(event.event()).build());
     }
 }
@@ -1,20 +1,29 @@
 package com.davidcerdeiro.documind.controller;
 
-import java.util.Map;
+import java.io.IOException;
+import java.util.List;
 
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.davidcerdeiro.documind.dto.BatchStatus;
+import com.davidcerdeiro.documind.dto.BatchUploadResponse;
+import com.davidcerdeiro.documind.dto.DocumentSummary;
 import com.davidcerdeiro.documind.dto.JobStatus;
+import com.davidcerdeiro.documind.dto.UploadResponse;
 import com.davidcerdeiro.documind.facade.DocumentFacade;
 
+import jakarta.servlet.http.HttpServletRequest;
+
 @RestController
 @RequestMapping("/api/docs")
 public class DocumentController {
@@ -27,16 +36,113 @@ public class DocumentController {
     
     // Endpoint to upload document
     // Responses:
-    // 200 OK: Document processed and saved successfully
+    // Optional "collection" groups documents for scoped questions (default: "default")
+    // 202 Accepted: Document queued for processing, returns its jobId and documentId
+    // 413 Payload Too Large: If the file is over app.upload.max-file-size
     // 415 Unsupported Media Type: If the uploaded file is not a PDF
-    @PostMapping("/upload")
-    public ResponseEntity<Map<String, String>> uploadDocument(@RequestParam("file") MultipartFile file) {
-        String jobId = documentFacade.processAndSaveDocumentAsync(file);
+    // 429 Too Many Requests: If the ingestion queue is full (see the Retry-After header)
+    // 503 Service Unavailable: If the upload spool is full (see the Retry-After header)
+    @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<UploadResponse> uploadDocument(@RequestParam("file") MultipartFile file,
+            @RequestParam(value = "collection", required = false) String collection, HttpServletRequest request) {
+        UploadResponse response = documentFacade.processAndSaveDocumentAsync(file, uploader(request), collection, null);
         
-        return ResponseEntity.accepted().body(Map.of(
-            "jobId", jobId,
-            "status", "PROCESSING"
-        ));
+        return ResponseEntity.accepted().body(response);
+    }
+
+    // Endpoint to upload a document sent as the request body (Content-Type: application/pdf), streamed to disk as it arrives
+    // Optional "fileName" is shown in the document list
+    // Responses: same as upload
+    @PostMapping(value = "/upload", consumes = MediaType.APPLICATION_PDF_VALUE)
+    public ResponseEntity<UploadResponse> uploadDocumentBody(@RequestParam(value = "fileName", required = false) String fileName,
+            @RequestParam(value = "collection", required = false) String collection, HttpServletRequest request) throws IOException {
+        UploadResponse response = documentFacade.processAndSaveDocumentAsync(request.getInputStream(), request.getContentLengthLong(),
+                fileName, uploader(request), collection, null);
+
+        return ResponseEntity.accepted().body(response);
+    }
+
+    // Endpoint to replace a document with a new version of the file
+    // The previous chunks stay searchable until the new ones are stored
+    // Responses: same as upload, plus 409 if the document is already being replaced
+    @PutMapping(value = "/{documentId}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<UploadResponse> replaceDocument(@PathVariable String documentId, @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "collection", required = false) String collection, HttpServletRequest request) {
+        UploadResponse response = documentFacade.processAndSaveDocumentAsync(file, uploader(request), collection, documentId);
+
+        return ResponseEntity.accepted().body(response);
+    }
+
+    // Endpoint to replace a document with a new version sent as the request body (Content-Type: application/pdf)
+    // Responses: same as upload, plus 409 if the document is already being replaced
+    @PutMapping(value = "/{documentId}", consumes = MediaType.APPLICATION_PDF_VALUE)
+    public ResponseEntity<UploadResponse> replaceDocumentBody(@PathVariable String documentId,
+            @RequestParam(value = "fileName", required = false) String fileName,
+            @RequestParam(value = "collection", required = false) String collection, HttpServletRequest request) throws IOException {
+        UploadResponse response = documentFacade.processAndSaveDocumentAsync(request.getInputStream(), request.getContentLengthLong(),
+                fileName, uploader(request), collection, documentId);
+
+        return ResponseEntity.accepted().body(response);
+    }
+
+    // Endpoint to upload many documents at once: "files" takes any number of PDFs and ZIP archives of PDFs
+    // Files that are not PDFs are skipped and listed in the response
+    // Optional "deferIndex" (large initial loads) builds the vector index once after the batch instead of row by row;
+    // questions still work meanwhile, but slower
+    // Responses:
+    // 202 Accepted: Batch queued for processing, returns its batchId and one jobId per PDF
+    // 413 Payload Too Large: If a file is too large or the batch has more than app.upload.max-batch-files PDFs
+    // 415 Unsupported Media Type: If there is no PDF in the batch
+    // 429 / 503: Same as upload
+    @PostMapping(value = "/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<BatchUploadResponse> uploadBatch(@RequestParam("files") List<MultipartFile> files,
+            @RequestParam(value = "collection", required = false) String collection,
+            @RequestParam(value = "deferIndex", defaultValue = "false") boolean deferIndex, HttpServletRequest request) {
+        BatchUploadResponse response = documentFacade.processAndSaveBatchAsync(files, uploader(request), collection, deferIndex);
+
+        return ResponseEntity.accepted().body(response);
+    }
+
+    // Endpoint to check the status of a bulk upload, with the status of each of its files
+    // Responses:
+    // 200 OK: Returns the status of the batch
+    // 404 Not Found: If the provided batchId does not exist
+    @GetMapping("/batch/{batchId}")
+    public ResponseEntity<BatchStatus> getBatchStatus(@PathVariable String batchId) {
+        BatchStatus status = documentFacade.getBatchStatus(batchId);
+
+        if ("NOT_FOUND".equals(status.status())) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok(status);
+    }
+
+    // Endpoint to list the stored documents, optionally of one collection
+    @GetMapping
+    public ResponseEntity<List<DocumentSummary>> listDocuments(@RequestParam(value = "collection", required = false) String collection) {
+        return ResponseEntity.ok(documentFacade.listDocuments(collection));
+    }
+
+    // Endpoint to delete a single document
+    // Responses:
+    // 204 No Content: Document deleted
+    // 404 Not Found: If the document doesn't exist
+    @DeleteMapping("/{documentId}")
+    public ResponseEntity<Void> deleteDocument(@PathVariable String documentId) {
+        if (!documentFacade.deleteDocument(documentId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    // Client address, as seen by nginx when the request comes through it
+    private static String uploader(HttpServletRequest request) {
+        String forwardedFor = request.getHeader("X-Forwarded-For");
+        if (forwardedFor != null && !forwardedFor.isBlank()) {
+            return forwardedFor.split(",")[0].trim();
+        }
+        return request.getRemoteAddr();
     }
 
     // Endpoint to check processing status
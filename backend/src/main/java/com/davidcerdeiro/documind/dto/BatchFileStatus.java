@@ -0,0 +1,7 @@
+package com.davidcerdeiro.documind.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Status of one file of a bulk upload
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchFileStatus(String jobId, String documentId, String fileName, String status, int progress, String message) {}
@@ -0,0 +1,16 @@
+package com.davidcerdeiro.documind.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// status is QUEUED or PROCESSING while any file is unfinished, then COMPLETED, or ERROR if at least one file failed.
+// progress is the average of the files. queuePosition is only set while the batch is QUEUED (1 = next to start).
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchStatus(String batchId, String status, int progress, int completed, int failed, Integer queuePosition,
+        List<BatchFileStatus> files) {
+
+    public BatchStatus withQueuePosition(int queuePosition) {
+        return new BatchStatus(batchId, status, progress, completed, failed, queuePosition, files);
+    }
+}
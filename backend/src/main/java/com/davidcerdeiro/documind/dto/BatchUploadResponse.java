@@ -0,0 +1,6 @@
+package com.davidcerdeiro.documind.dto;
+
+import java.util.List;
+
+// One job per PDF of the batch. skipped lists the files (or archive entries) that were not PDFs.
+public record BatchUploadResponse(String batchId, String status, List<UploadResponse> jobs, List<String> skipped) {}
@@ -1,4 +1,11 @@
 package com.davidcerdeiro.documind.dto;
 
+import java.util.List;
 
-public record ChatRequest(String question) {}
\ No newline at end of file
+// collection and documentIds are optional, they restrict the search to those documents.
+// profile is optional too: fast, balanced (default) or exact, see RetrievalProfiles.
+public record ChatRequest(String question, String collection, List<String> documentIds, String profile) {
+    public ChatRequest(String question, String collection, List<String> documentIds) {
+        this(question, collection, documentIds, null);
+    }
+}
@@ -1,3 +1,9 @@
 package com.davidcerdeiro.documind.dto;
 
-public record ChatResponse(String answer) {}
+// cached is true when the answer came from the semantic answer cache instead of the model.
+// contextTokensSaved is how many prompt tokens the context builder saved (0 for cached answers).
+public record ChatResponse(String answer, boolean cached, int contextTokensSaved) {
+    public ChatResponse(String answer, boolean cached) {
+        this(answer, cached, 0);
+    }
+}
@@ -0,0 +1,24 @@
+package com.davidcerdeiro.documind.dto;
+
+import java.util.Map;
+
+// Event of a streamed answer: "token" events carry answer text, and exactly one terminal event closes the stream,
+// "done" (200) when the answer is complete or "not-found" (404) when the model found no information.
+// Token text is wrapped in JSON because SSE clients strip the leading space of a data line.
+public record ChatStreamEvent(String event, Object data) {
+
+    public static ChatStreamEvent token(String text) {
+        return new ChatStreamEvent("token", Map.of("text", text));
+    }
+
+    public static ChatStreamEvent done(boolean cached, int contextTokensSaved) {
+        return new ChatStreamEvent("done", Map.of("status", 200, "cached", cached, "contextTokensSaved", contextTokensSaved));
+    }
+
+    public static ChatStreamEvent notFound(boolean cached) {
+        return new ChatStreamEvent("not-found", Map.of(
+            "status", 404,
+            "cached", cached,
+            "message", "The question doesn't have related info in the document"));
+    }
+}
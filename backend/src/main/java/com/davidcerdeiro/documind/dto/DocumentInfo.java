@@ -0,0 +1,4 @@
+package com.davidcerdeiro.documind.dto;
+
+// Document an ingestion job writes. Replacing a document reuses its documentId.
+public record DocumentInfo(String documentId, String collection, String fileName) {}
@@ -0,0 +1,3 @@
+package com.davidcerdeiro.documind.dto;
+
+public record DocumentSummary(String documentId, String collection, String fileName, int chunks) {}
@@ -1,7 +1,19 @@
 package com.davidcerdeiro.documind.dto;
 
-public record JobStatus(String status, int progress, String message) {
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// queuePosition is only set while the job is QUEUED (1 = next to start)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record JobStatus(String status, int progress, String message, Integer queuePosition) {
     public JobStatus(String status, int progress) {
-        this(status, progress, null);
+        this(status, progress, null, null);
+    }
+
+    public JobStatus(String status, int progress, String message) {
+        this(status, progress, message, null);
+    }
+
+    public JobStatus withQueuePosition(int queuePosition) {
+        return new JobStatus(status, progress, message, queuePosition);
     }
 }
@@ -0,0 +1,6 @@
+package com.davidcerdeiro.documind.dto;
+
+import java.util.Map;
+
+// A chunk already in vector_store, identified by the fingerprint of its text (TextFingerprint.sha256)
+public record StoredChunk(String id, String contentHash, Map<String, Object> metadata) {}
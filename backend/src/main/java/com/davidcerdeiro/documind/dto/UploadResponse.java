@@ -0,0 +1,3 @@
+package com.davidcerdeiro.documind.dto;
+
+public record UploadResponse(String jobId, String documentId, String status) {}
@@ -0,0 +1,11 @@
+package com.davidcerdeiro.documind.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.CONFLICT, reason = "The document is already being replaced.")
+public class DocumentBusyException extends RuntimeException {
+    public DocumentBusyException(String message) {
+        super(message);
+    }
+}
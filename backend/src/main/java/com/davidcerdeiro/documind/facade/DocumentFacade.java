@@ -1,71 +1,307 @@
 package com.davidcerdeiro.documind.facade;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
-import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
 import org.springframework.core.io.FileSystemResource;
+import com.davidcerdeiro.documind.cache.TextFingerprint;
+import com.davidcerdeiro.documind.concurrency.SingleFlight;
+import com.davidcerdeiro.documind.dto.BatchStatus;
+import com.davidcerdeiro.documind.dto.BatchUploadResponse;
+import com.davidcerdeiro.documind.dto.ChatRequest;
+import com.davidcerdeiro.documind.dto.ChatResponse;
+import com.davidcerdeiro.documind.dto.ChatStreamEvent;
+import com.davidcerdeiro.documind.dto.DocumentInfo;
+import com.davidcerdeiro.documind.dto.DocumentSummary;
 import com.davidcerdeiro.documind.dto.JobStatus;
+import com.davidcerdeiro.documind.dto.UploadResponse;
 import com.davidcerdeiro.documind.exception.InvalidFileTypeException;
 import com.davidcerdeiro.documind.exception.NoDocumentsException;
+import com.davidcerdeiro.documind.exception.UploadTooLargeException;
+import com.davidcerdeiro.documind.service.CorpusVersion;
 import com.davidcerdeiro.documind.service.DocumentService;
+import com.davidcerdeiro.documind.service.DocumentService.BatchFile;
+import com.davidcerdeiro.documind.service.IngestionQueue;
+import com.davidcerdeiro.documind.service.UploadSpool;
+
+import reactor.core.publisher.Flux;
 
 @Component
 public class DocumentFacade {
     
+    // Collection of the documents uploaded without one
+    public static final String DEFAULT_COLLECTION = "default";
+
+    private static final Set<String> ZIP_CONTENT_TYPES = Set.of("application/zip", "application/x-zip-compressed");
+
     private final DocumentService documentService;
 
-    public DocumentFacade(DocumentService documentService) {
+    private final IngestionQueue ingestionQueue;
+
+    private final UploadSpool uploadSpool;
+
+    private final CorpusVersion corpusVersion;
+
+    private final SingleFlight<String, ChatResponse> chatSingleFlight;
+
+    private final int maxBatchFiles;
+
+    public DocumentFacade(DocumentService documentService, IngestionQueue ingestionQueue, UploadSpool uploadSpool,
+            CorpusVersion corpusVersion, SingleFlight<String, ChatResponse> chatSingleFlight,
+            @Value("${app.upload.max-batch-files:500}") int maxBatchFiles) {
         this.documentService = documentService;
+        this.ingestionQueue = ingestionQueue;
+        this.uploadSpool = uploadSpool;
+        this.corpusVersion = corpusVersion;
+        this.chatSingleFlight = chatSingleFlight;
+        this.maxBatchFiles = maxBatchFiles;
     }
 
 
-    public String processAndSaveDocumentAsync(MultipartFile file) {
+    // uploader identifies the client, jobs are scheduled round-robin across uploaders.
+    // documentId is null for a new document; for an existing one its chunks are replaced when the job completes.
+    public UploadResponse processAndSaveDocumentAsync(MultipartFile file, String uploader, String collection, String documentId) {
         // 1. Validate file type
-        if (!Objects.equals(file.getContentType(), "application/pdf")) {
-            throw new InvalidFileTypeException("The file must be a PDF. Received: " + file.getContentType());
+        validateContentType(file.getContentType());
+
+        // 2. Generate unique ID for this process (and for the document if it is new)
+        String jobId = UUID.randomUUID().toString();
+        DocumentInfo document = documentInfo(documentId, collection, file.getOriginalFilename());
+
+        // 3. Hold a place in the queue before the upload is spooled. Fails with a 429 if the queue is full.
+        try (IngestionQueue.Reservation reservation = ingestionQueue.reserve()) {
+            // 4. Move the upload to the spool, the job may start after this request is gone.
+            // Fails with a 413 if the file is too large or a 503 if the spool is full.
+            Path spooled = uploadSpool.store(jobId, file);
+
+            return queue(reservation, jobId, document, uploader, spooled);
         }
+    }
 
-        // 2. Generate unique ID for this process
+    // Same as above for a PDF sent as the raw request body, which is written to the spool as it arrives
+    // instead of being parsed as multipart first. contentLength is -1 if unknown.
+    public UploadResponse processAndSaveDocumentAsync(InputStream body, long contentLength, String fileName, String uploader,
+            String collection, String documentId) {
         String jobId = UUID.randomUUID().toString();
+        DocumentInfo document = documentInfo(documentId, collection, fileName);
+
+        try (IngestionQueue.Reservation reservation = ingestionQueue.reserve()) {
+            Path spooled = uploadSpool.store(jobId, body, contentLength);
+
+            return queue(reservation, jobId, document, uploader, spooled);
+        }
+    }
+
+    // Bulk upload: every PDF, including the ones inside ZIP archives, becomes a job of the batch.
+    // Other files are skipped and listed in the response. The batch is queued as a single entry (429 if the
+    // queue is full, before anything is spooled) and its files are processed in parallel, see DocumentService.processBatch.
+    // deferIndex drops the vector index while the batch loads and builds it once at the end (large initial loads).
+    public BatchUploadResponse processAndSaveBatchAsync(List<MultipartFile> files, String uploader, String collection, boolean deferIndex) {
+        String batchId = UUID.randomUUID().toString();
+        List<BatchFile> batch = new ArrayList<>();
+        List<String> skipped = new ArrayList<>();
+
+        try (IngestionQueue.Reservation reservation = ingestionQueue.reserve()) {
+            for (MultipartFile file : files) {
+                if (isZip(file)) {
+                    spoolArchive(file, collection, batch, skipped);
+                } else if (Objects.equals(file.getContentType(), "application/pdf")) {
+                    checkBatchSize(batch);
+                    String jobId = UUID.randomUUID().toString();
+                    Path spooled = uploadSpool.store(jobId, file);
+                    batch.add(new BatchFile(jobId, documentInfo(null, collection, file.getOriginalFilename()), new FileSystemResource(spooled)));
+                } else {
+                    skipped.add(file.getOriginalFilename());
+                }
+            }
+            if (batch.isEmpty()) {
+                throw new InvalidFileTypeException("The batch doesn't contain any PDF file.");
+            }
+
+            for (BatchFile file : batch) {
+                documentService.markQueued(file.jobId(), file.document(), uploader, spooledPath(file), batchId);
+            }
+            ingestionQueue.submit(reservation, batchId, uploader, () -> documentService.processBatch(batchId, batch, deferIndex));
+        } catch (RuntimeException e) {
+            for (BatchFile file : batch) {
+                documentService.discardJob(file.jobId());
+                uploadSpool.release(file.resource());
+            }
+            throw e;
+        }
+
+        List<UploadResponse> jobs = batch.stream()
+                .map(file -> new UploadResponse(file.jobId(), file.document().documentId(), "QUEUED"))
+                .toList();
+        return new BatchUploadResponse(batchId, "QUEUED", jobs, skipped);
+    }
+
+    public BatchStatus getBatchStatus(String batchId) {
+        BatchStatus status = documentService.getBatchStatus(batchId);
+        if ("QUEUED".equals(status.status())) {
+            int position = ingestionQueue.position(batchId);
+            return position > 0 ? status.withQueuePosition(position) : status;
+        }
+        return status;
+    }
+
+    private static boolean isZip(MultipartFile file) {
+        String name = file.getOriginalFilename();
+        return ZIP_CONTENT_TYPES.contains(file.getContentType()) || (name != null && name.toLowerCase(Locale.ROOT).endsWith(".zip"));
+    }
+
+    // Entries are streamed from the archive straight into the spool, the archive is never extracted as a whole.
+    // The spool limits apply to each entry, so a zip bomb fails with a 413 or a 503 instead of filling the disk.
+    private void spoolArchive(MultipartFile archive, String collection, List<BatchFile> batch, List<String> skipped) {
+        try (ZipInputStream zip = new ZipInputStream(archive.getInputStream())) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                String name = entry.getName();
+                if (entry.isDirectory() || name.startsWith("__MACOSX/")) {
+                    continue;
+                }
+                if (!name.toLowerCase(Locale.ROOT).endsWith(".pdf")) {
+                    skipped.add(archive.getOriginalFilename() + "/" + name);
+                    continue;
+                }
+
+                checkBatchSize(batch);
+                String jobId = UUID.randomUUID().toString();
+                Path spooled = uploadSpool.store(jobId, StreamUtils.nonClosing(zip), -1);
+                String fileName = name.substring(name.lastIndexOf('/') + 1);
+                batch.add(new BatchFile(jobId, documentInfo(null, collection, fileName), new FileSystemResource(spooled)));
+            }
+        } catch (IOException e) {
+            throw new InvalidFileTypeException("Could not read the archive " + archive.getOriginalFilename() + ": " + e.getMessage());
+        }
+    }
+
+    private void checkBatchSize(List<BatchFile> batch) {
+        if (batch.size() >= maxBatchFiles) {
+            throw new UploadTooLargeException("A batch can't have more than " + maxBatchFiles + " PDF files.");
+        }
+    }
 
-        // 3. Launch the process in the background
+    private static Path spooledPath(BatchFile file) {
         try {
-            Path tempFile = Files.createTempFile("documind_" + jobId, ".pdf");
-            file.transferTo(tempFile.toFile());
+            return file.resource().getFile().toPath();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void validateContentType(String contentType) {
+        if (!Objects.equals(contentType, "application/pdf")) {
+            throw new InvalidFileTypeException("The file must be a PDF. Received: " + contentType);
+        }
+    }
+
+    private static DocumentInfo documentInfo(String documentId, String collection, String fileName) {
+        return new DocumentInfo(
+                documentId != null ? documentId : UUID.randomUUID().toString(),
+                collection == null || collection.isBlank() ? DEFAULT_COLLECTION : collection.trim(),
+                fileName);
+    }
 
-            // 4. Launch async process with the FileSystemResource (Persistent)
-            documentService.processFileAsync(jobId, new FileSystemResource(tempFile.toFile()));
-        } catch (Exception e) {
-            throw new RuntimeException("Error initiating document processing", e);
+    private UploadResponse queue(IngestionQueue.Reservation reservation, String jobId, DocumentInfo document, String uploader, Path spooled) {
+        // 5. Queue the job with the FileSystemResource (Persistent) in the place held for it
+        FileSystemResource resource = new FileSystemResource(spooled);
+        try {
+            documentService.markQueued(jobId, document, uploader, spooled);
+            ingestionQueue.submit(reservation, jobId, uploader, () -> documentService.processFile(jobId, document, resource));
+        } catch (RuntimeException e) {
+            documentService.discardJob(jobId);
+            uploadSpool.release(spooled);
+            throw e;
         }
 
-        // 4. Return the ID immediately so the user doesn't have to wait
-        return jobId;
+        // 6. Return the ID immediately so the user doesn't have to wait
+        return new UploadResponse(jobId, document.documentId(), "QUEUED");
     }
     
     // MMethod to check the status
     public JobStatus getProcessingStatus(String jobId) {
         JobStatus status = documentService.getStatus(jobId);
+        if ("QUEUED".equals(status.status())) {
+            // Only the instance that queued the job knows its position
+            int position = ingestionQueue.position(jobId);
+            return position > 0 ? status.withQueuePosition(position) : status;
+        }
         return status;
     }
 
-    public String promptModel(String question) {
-        List<Document> similarDocuments = documentService.similaritySearch(question);
+    // Concurrent requests with the same normalized question, scope and profile against the same corpus version
+    // share one search and model call, and all get its answer (or its error)
+    public ChatResponse promptModel(ChatRequest request) {
+        Filter.Expression filter = searchFilter(request);
+        String key = TextFingerprint.normalize(request.question()) + "|" + request.profile() + "|" + filter + "|" + corpusVersion.current();
+        return chatSingleFlight.call(key, () -> answer(request.question(), filter, request.profile()));
+    }
+
+    private ChatResponse answer(String question, Filter.Expression filter, String profile) {
+        List<Document> similarDocuments = documentService.similaritySearch(question, filter, profile);
 
         if (similarDocuments.isEmpty()) {
             throw new NoDocumentsException("The question "+ question + " doesn't have related info in the document");
         }
 
-        String response = documentService.promptModel(similarDocuments, question);
+        ChatResponse response = documentService.cachedPromptModel(similarDocuments, question);
 
         return response;
     }
 
+    // The similarity search runs before streaming starts, so a question without related chunks still fails with a 404
+    public Flux<ChatStreamEvent> streamPromptModel(ChatRequest request) {
+        String question = request.question();
+        List<Document> similarDocuments = documentService.similaritySearch(question, searchFilter(request), request.profile());
+
+        if (similarDocuments.isEmpty()) {
+            throw new NoDocumentsException("The question "+ question + " doesn't have related info in the document");
+        }
+
+        return documentService.streamCachedPromptModel(similarDocuments, question);
+    }
+
+    // Only the chunks of the given collection and/or documents are searched, null when the request has neither
+    private static Filter.Expression searchFilter(ChatRequest request) {
+        FilterExpressionBuilder filter = new FilterExpressionBuilder();
+        FilterExpressionBuilder.Op scope = null;
+
+        if (request.collection() != null && !request.collection().isBlank()) {
+            scope = filter.eq(DocumentService.METADATA_COLLECTION, request.collection().trim());
+        }
+        if (request.documentIds() != null && !request.documentIds().isEmpty()) {
+            FilterExpressionBuilder.Op documents = filter.in(DocumentService.METADATA_DOCUMENT_ID, request.documentIds().toArray());
+            scope = scope == null ? documents : filter.and(scope, documents);
+        }
+
+        return scope == null ? null : scope.build();
+    }
+
+    // false if the document doesn't exist
+    public boolean deleteDocument(String documentId) {
+        return documentService.deleteDocument(documentId) > 0;
+    }
+
+    public List<DocumentSummary> listDocuments(String collection) {
+        return documentService.listDocuments(collection);
+    }
+
     public void clearVectorStore() {
         documentService.clearVectorStore();
     }
@@ -0,0 +1,37 @@
+package com.davidcerdeiro.documind.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import jakarta.annotation.PostConstruct;
+
+// The corpus version shared by every replica: a single row, bumped after every write to vector_store
+// (by whichever replica made it) and read by the caches on every lookup
+@Repository
+public class CorpusVersionRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CorpusVersionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void initializeSchema() {
+        jdbcTemplate.execute("""
+            CREATE TABLE IF NOT EXISTS corpus_version (
+                id int PRIMARY KEY CHECK (id = 1),
+                version bigint NOT NULL
+            )
+            """);
+        jdbcTemplate.execute("INSERT INTO corpus_version (id, version) VALUES (1, 0) ON CONFLICT DO NOTHING");
+    }
+
+    public long current() {
+        return jdbcTemplate.queryForObject("SELECT version FROM corpus_version WHERE id = 1", Long.class);
+    }
+
+    public long increment() {
+        return jdbcTemplate.queryForObject("UPDATE corpus_version SET version = version + 1 WHERE id = 1 RETURNING version", Long.class);
+    }
+}
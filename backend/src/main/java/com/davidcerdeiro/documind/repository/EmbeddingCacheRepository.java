@@ -0,0 +1,72 @@
+package com.davidcerdeiro.documind.repository;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.pgvector.PGvector;
+
+import jakarta.annotation.PostConstruct;
+
+// Persistent tier of the embedding cache: one row per (model, chunk text hash)
+@Repository
+public class EmbeddingCacheRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EmbeddingCacheRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void initializeSchema() {
+        // This can run before the vector store has created the extension
+        jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS vector");
+        // No dimension on the column, so switching the embedding model doesn't need a migration
+        jdbcTemplate.execute("""
+            CREATE TABLE IF NOT EXISTS embedding_cache (
+                cache_key varchar(64) PRIMARY KEY,
+                model text NOT NULL,
+                embedding vector NOT NULL,
+                created_at timestamptz NOT NULL DEFAULT now()
+            )
+            """);
+    }
+
+    public Map<String, float[]> findAll(Collection<String> cacheKeys) {
+        Map<String, float[]> embeddings = new HashMap<>();
+        if (cacheKeys.isEmpty()) {
+            return embeddings;
+        }
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement("SELECT cache_key, embedding::text FROM embedding_cache WHERE cache_key = ANY(?)");
+            Array keys = connection.createArrayOf("varchar", cacheKeys.toArray());
+            ps.setArray(1, keys);
+            return ps;
+        }, rs -> {
+            embeddings.put(rs.getString(1), new PGvector(rs.getString(2)).toArray());
+        });
+
+        return embeddings;
+    }
+
+    public void saveAll(String model, Map<String, float[]> embeddings) {
+        if (embeddings.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>(embeddings.size());
+        embeddings.forEach((cacheKey, embedding) -> rows.add(new Object[] { cacheKey, model, new PGvector(embedding) }));
+
+        // Two jobs can embed the same chunk at the same time, the first one wins
+        jdbcTemplate.batchUpdate("INSERT INTO embedding_cache (cache_key, model, embedding) VALUES (?, ?, ?) ON CONFLICT (cache_key) DO NOTHING", rows);
+    }
+}
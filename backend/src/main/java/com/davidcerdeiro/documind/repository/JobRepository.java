@@ -0,0 +1,168 @@
+package com.davidcerdeiro.documind.repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import com.davidcerdeiro.documind.dto.DocumentInfo;
+
+import jakarta.annotation.PostConstruct;
+
+// Ingestion jobs, shared by every replica. updated_at doubles as the heartbeat of the instance that owns the job:
+// a QUEUED or PROCESSING job that nobody has touched for a while belongs to an instance that is gone.
+@Repository
+public class JobRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(JobRepository.class);
+
+    private static final RowMapper<StoredJob> ROW_MAPPER = (rs, rowNum) -> new StoredJob(
+            rs.getString("job_id"),
+            rs.getString("status"),
+            rs.getInt("progress"),
+            rs.getString("message"),
+            rs.getInt("committed_chunks"),
+            rs.getString("file_path"),
+            rs.getString("uploader"),
+            new DocumentInfo(rs.getString("document_id"), rs.getString("collection"), rs.getString("file_name")),
+            rs.getString("spool_host"),
+            rs.getTimestamp("created_at").toInstant());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JobRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void initializeSchema() {
+        jdbcTemplate.execute("""
+            CREATE TABLE IF NOT EXISTS ingestion_job (
+                job_id varchar(36) PRIMARY KEY,
+                status varchar(16) NOT NULL,
+                progress int NOT NULL DEFAULT 0,
+                message text,
+                committed_chunks int NOT NULL DEFAULT 0,
+                file_path text,
+                uploader text,
+                document_id text,
+                collection text,
+                file_name text,
+                owner varchar(36),
+                created_at timestamptz NOT NULL DEFAULT now(),
+                updated_at timestamptz NOT NULL DEFAULT now()
+            )
+            """);
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS ingestion_job_status_idx ON ingestion_job (status, updated_at)");
+        // Jobs uploaded together through the bulk endpoint share a batch_id
+        jdbcTemplate.execute("ALTER TABLE ingestion_job ADD COLUMN IF NOT EXISTS batch_id varchar(36)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS ingestion_job_batch_idx ON ingestion_job (batch_id)");
+        // Host whose spool holds the upload, for spools that aren't shared between replicas
+        jdbcTemplate.execute("ALTER TABLE ingestion_job ADD COLUMN IF NOT EXISTS spool_host text");
+        // At most one unfinished job per document: two replacements of the same document running at once would each
+        // delete the chunks the other one has written, see VectorStoreRepository.replaceOtherVersions
+        try {
+            jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS ingestion_job_unfinished_document_idx ON ingestion_job (document_id) "
+                    + "WHERE status IN ('QUEUED', 'PROCESSING')");
+        } catch (DuplicateKeyException e) {
+            // Left from before the index existed, it is created on a later start once those jobs have finished
+            log.warn("Documents with more than one unfinished job, replacements are not serialized until they finish: {}", e.getMessage());
+        }
+    }
+
+    // batchId is null for a single upload.
+    // Fails with a DuplicateKeyException if the document already has an unfinished job.
+    public void insert(String jobId, DocumentInfo document, String filePath, String spoolHost, String uploader, String owner, String batchId) {
+        jdbcTemplate.update("""
+            INSERT INTO ingestion_job (job_id, status, file_path, spool_host, uploader, document_id, collection, file_name, owner, batch_id)
+            VALUES (?, 'QUEUED', ?, ?, ?, ?, ?, ?, ?, ?)
+            """,
+            jobId, filePath, spoolHost, uploader, document.documentId(), document.collection(), document.fileName(), owner, batchId);
+    }
+
+    // Jobs of a batch, in upload order
+    public List<StoredJob> findBatch(String batchId) {
+        return jdbcTemplate.query("SELECT * FROM ingestion_job WHERE batch_id = ? ORDER BY created_at, file_name", ROW_MAPPER, batchId);
+    }
+
+    public Optional<StoredJob> find(String jobId) {
+        return jdbcTemplate.query("SELECT * FROM ingestion_job WHERE job_id = ?", ROW_MAPPER, jobId).stream().findFirst();
+    }
+
+    public void updateStatus(String jobId, String status, int progress, String message) {
+        jdbcTemplate.update("UPDATE ingestion_job SET status = ?, progress = ?, message = ?, updated_at = now() WHERE job_id = ?",
+                status, progress, message, jobId);
+    }
+
+    // Keeps progress and committed chunks, a resumed job carries on from them
+    public void markProcessing(String jobId) {
+        jdbcTemplate.update("UPDATE ingestion_job SET status = 'PROCESSING', updated_at = now() WHERE job_id = ?", jobId);
+    }
+
+    // One statement for all the jobs, and never over a job that has already finished
+    public void updateProgress(List<ProgressUpdate> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("""
+            UPDATE ingestion_job SET progress = GREATEST(progress, ?), committed_chunks = GREATEST(committed_chunks, ?), updated_at = now()
+            WHERE job_id = ? AND status = 'PROCESSING'
+            """,
+            updates.stream().map(u -> new Object[] { u.progress(), u.committedChunks(), u.jobId() }).toList());
+    }
+
+    public void heartbeat(String owner) {
+        jdbcTemplate.update("UPDATE ingestion_job SET updated_at = now() WHERE owner = ? AND status IN ('QUEUED', 'PROCESSING')", owner);
+    }
+
+    // Takes over the unfinished jobs whose owner has stopped sending heartbeats. Two instances can't claim the same job:
+    // the second UPDATE sees the fresh updated_at written by the first one.
+    public List<StoredJob> claimStale(String owner, Duration staleAfter) {
+        return jdbcTemplate.query("""
+            UPDATE ingestion_job SET owner = ?, updated_at = now()
+            WHERE status IN ('QUEUED', 'PROCESSING') AND updated_at < now() - make_interval(secs => ?)
+            RETURNING *
+            """, ROW_MAPPER, owner, staleAfter.toSeconds());
+    }
+
+    // Gives up a claimed job so the next recovery round picks it up again
+    public void release(String jobId) {
+        jdbcTemplate.update("UPDATE ingestion_job SET owner = NULL, updated_at = to_timestamp(0) WHERE job_id = ?", jobId);
+    }
+
+    // Gives up a claimed job for now: it becomes stale again after stale-after, like a job whose owner stopped
+    public void skip(String jobId) {
+        jdbcTemplate.update("UPDATE ingestion_job SET owner = NULL, updated_at = now() WHERE job_id = ?", jobId);
+    }
+
+    public int deleteFinishedBefore(Duration ttl) {
+        return jdbcTemplate.update("DELETE FROM ingestion_job WHERE status IN ('COMPLETED', 'ERROR') AND updated_at < now() - make_interval(secs => ?)",
+                ttl.toSeconds());
+    }
+
+    public void deleteFinished() {
+        jdbcTemplate.update("DELETE FROM ingestion_job WHERE status IN ('COMPLETED', 'ERROR')");
+    }
+
+    // Files still needed by a job that may run (or be resumed)
+    public List<String> unfinishedFilePaths() {
+        return jdbcTemplate.queryForList("SELECT file_path FROM ingestion_job WHERE status IN ('QUEUED', 'PROCESSING') AND file_path IS NOT NULL",
+                String.class);
+    }
+
+    public void delete(String jobId) {
+        jdbcTemplate.update("DELETE FROM ingestion_job WHERE job_id = ?", jobId);
+    }
+
+    public record StoredJob(String jobId, String status, int progress, String message, int committedChunks, String filePath, String uploader,
+            DocumentInfo document, String spoolHost, Instant createdAt) {}
+
+    public record ProgressUpdate(String jobId, int progress, int committedChunks) {}
+}
@@ -0,0 +1,249 @@
+package com.davidcerdeiro.documind.repository;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+
+import jakarta.annotation.PostConstruct;
+
+// Writes already-embedded chunks to vector_store, one transaction per call.
+// "copy" streams the rows with COPY ... FROM STDIN (FORMAT binary) into a temporary staging table and moves
+// them with a single INSERT ... SELECT ... ON CONFLICT, so a batch costs one round trip for the data and
+// one statement for the upsert. "batch" sends a batched multi-row upsert instead, for poolers or proxies
+// that don't support COPY. Either way the rows are the ones VectorStore.add would have written.
+// For very large loads the HNSW index can be dropped while loading and built once at the end, see deferIndex.
+@Repository
+public class VectorBulkWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(VectorBulkWriter.class);
+
+    private static final String TABLE = "vector_store";
+
+    private static final byte[] COPY_SIGNATURE = "PGCOPY\n\377\r\n\0".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final VectorSearchRepository vectorSearchRepository;
+
+    private final boolean useCopy;
+
+    private final String indexBuildMemory;
+
+    // The vector store creates the table and VectorSearchRepository its index, so they must be initialized first
+    public VectorBulkWriter(JdbcTemplate jdbcTemplate, VectorSearchRepository vectorSearchRepository, ObjectMapper objectMapper,
+            @Value("${app.vector-writer.mode:copy}") String mode,
+            @Value("${app.vector-writer.index-build-memory:512MB}") String indexBuildMemory) {
+        if (!mode.equals("copy") && !mode.equals("batch")) {
+            throw new IllegalArgumentException("Invalid vector writer mode: " + mode);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.vectorSearchRepository = vectorSearchRepository;
+        this.useCopy = mode.equals("copy");
+        this.indexBuildMemory = indexBuildMemory;
+    }
+
+    // Bulk loads that asked for the vector index to be deferred and haven't finished yet, on any replica
+    @PostConstruct
+    void initializeSchema() {
+        jdbcTemplate.execute("""
+            CREATE TABLE IF NOT EXISTS vector_index_deferral (
+                batch_id varchar(36) PRIMARY KEY,
+                created_at timestamptz NOT NULL DEFAULT now()
+            )
+            """);
+    }
+
+    // embeddings.get(i) is the embedding of chunks.get(i)
+    public void write(List<Document> chunks, List<float[]> embeddings) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        if (chunks.size() != embeddings.size()) {
+            throw new IllegalArgumentException(chunks.size() + " chunks but " + embeddings.size() + " embeddings");
+        }
+
+        jdbcTemplate.execute((Connection connection) -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                if (useCopy) {
+                    copy(connection, chunks, embeddings);
+                } else {
+                    batchUpsert(connection, chunks, embeddings);
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+    }
+
+    private void copy(Connection connection, List<Document> chunks, List<float[]> embeddings) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            // Same column types as the target, without the generated and index-only parts
+            statement.execute("CREATE TEMP TABLE IF NOT EXISTS vector_store_staging (LIKE " + TABLE + " INCLUDING DEFAULTS) ON COMMIT DELETE ROWS");
+        }
+
+        try (OutputStream out = new PGCopyOutputStream(connection.unwrap(PGConnection.class),
+                "COPY vector_store_staging (id, content, metadata, embedding) FROM STDIN (FORMAT binary)", 1 << 16)) {
+            writeCopyData(out, chunks, embeddings);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not stream the chunks to the database", e);
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("""
+                INSERT INTO vector_store (id, content, metadata, embedding)
+                SELECT id, content, metadata, embedding FROM vector_store_staging
+                ON CONFLICT (id) DO UPDATE SET content = EXCLUDED.content, metadata = EXCLUDED.metadata, embedding = EXCLUDED.embedding
+                """);
+        }
+    }
+
+    private void batchUpsert(Connection connection, List<Document> chunks, List<float[]> embeddings) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("""
+                INSERT INTO vector_store (id, content, metadata, embedding) VALUES (?, ?, ?::json, ?)
+                ON CONFLICT (id) DO UPDATE SET content = EXCLUDED.content, metadata = EXCLUDED.metadata, embedding = EXCLUDED.embedding
+                """)) {
+            for (int i = 0; i < chunks.size(); i++) {
+                Document chunk = chunks.get(i);
+                ps.setObject(1, UUID.fromString(chunk.getId()));
+                ps.setString(2, chunk.getText());
+                ps.setString(3, toJson(chunk.getMetadata()));
+                ps.setObject(4, new PGvector(embeddings.get(i)));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    // Binary COPY stream: signature, flags and header extension, then per row the field count and each field
+    // as length + bytes (uuid: 16 bytes, text and json: UTF-8, vector: dimensions, unused, float4 values),
+    // and a -1 field count as trailer
+    public void writeCopyData(OutputStream target, List<Document> chunks, List<float[]> embeddings) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(target, 1 << 16));
+        out.write(COPY_SIGNATURE);
+        out.writeInt(0);
+        out.writeInt(0);
+
+        for (int i = 0; i < chunks.size(); i++) {
+            Document chunk = chunks.get(i);
+            out.writeShort(4);
+
+            UUID id = UUID.fromString(chunk.getId());
+            out.writeInt(16);
+            out.writeLong(id.getMostSignificantBits());
+            out.writeLong(id.getLeastSignificantBits());
+
+            writeBytes(out, chunk.getText().getBytes(StandardCharsets.UTF_8));
+            writeBytes(out, toJson(chunk.getMetadata()).getBytes(StandardCharsets.UTF_8));
+
+            float[] embedding = embeddings.get(i);
+            out.writeInt(4 + 4 * embedding.length);
+            out.writeShort(embedding.length);
+            out.writeShort(0);
+            for (float value : embedding) {
+                out.writeFloat(value);
+            }
+        }
+
+        out.writeShort(-1);
+        out.flush();
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private String toJson(Map<String, Object> metadata) {
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not serialize the chunk metadata", e);
+        }
+    }
+
+    // Drops the vector index (of the configured storage mode) for a large load: every row is then a plain heap insert instead of a graph update,
+    // and the index is built once, in bulk, when the last deferred load calls restoreIndex.
+    // Meanwhile similarity searches still work but scan the whole table. The loads are counted in vector_index_deferral
+    // under an advisory lock, so loads running on different replicas share one drop and one build.
+    @Transactional
+    public void deferIndex(String batchId) {
+        lockIndex();
+        boolean first = jdbcTemplate.queryForObject("SELECT count(*) FROM vector_index_deferral", Integer.class) == 0;
+        jdbcTemplate.update("INSERT INTO vector_index_deferral (batch_id) VALUES (?) ON CONFLICT DO NOTHING", batchId);
+        if (first) {
+            vectorSearchRepository.dropIndex();
+            log.info("Vector index dropped for a bulk load.");
+        }
+    }
+
+    @Transactional
+    public void restoreIndex(String batchId) {
+        lockIndex();
+        jdbcTemplate.update("DELETE FROM vector_index_deferral WHERE batch_id = ?", batchId);
+        buildIndexIfLast();
+    }
+
+    // A load whose replica died never calls restoreIndex. Its files are resumed one by one by JobRecovery,
+    // so its deferral is dropped once no job of its batch is left unfinished, and the index built if it was the last one.
+    @Scheduled(initialDelayString = "${app.ingestion.recovery-interval:1m}", fixedDelayString = "${app.ingestion.recovery-interval:1m}")
+    @Transactional
+    public void restoreAbandonedIndex() {
+        lockIndex();
+        int abandoned = jdbcTemplate.update("""
+            DELETE FROM vector_index_deferral d
+            WHERE NOT EXISTS (SELECT 1 FROM ingestion_job j WHERE j.batch_id = d.batch_id AND j.status IN ('QUEUED', 'PROCESSING'))
+            """);
+        if (abandoned > 0) {
+            log.warn("Dropped {} vector index deferrals of bulk loads that didn't finish.", abandoned);
+            buildIndexIfLast();
+        }
+    }
+
+    // Held until the transaction ends, the index build included
+    private void lockIndex() {
+        jdbcTemplate.execute("SELECT pg_advisory_xact_lock(hashtext('vector_index_deferral'))");
+    }
+
+    // The index is created IF NOT EXISTS, so a build that finds it already there costs nothing
+    private void buildIndexIfLast() {
+        if (jdbcTemplate.queryForObject("SELECT count(*) FROM vector_index_deferral", Integer.class) == 0) {
+            vectorSearchRepository.createIndex(indexBuildMemory);
+            log.info("Vector index built.");
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.davidcerdeiro.documind.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.pgvector.PgVectorFilterExpressionConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+
+// Owns the vector index of vector_store for the configured VectorStorageMode, and the similarity search over it,
+// with per-query HNSW settings (the vector store only uses whatever the session has).
+// Switching modes is the migration: once the application is ready the index of the new mode is built CONCURRENTLY,
+// in the background, from the full-precision column (searches and writes keep working meanwhile) and the indexes of
+// the other modes are dropped once it is valid. The vector store is told not to create an index of its own (index-type NONE).
+@Repository
+public class VectorSearchRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(VectorSearchRepository.class);
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {};
+
+    // Metadata key the vector store uses for the distance of a result
+    private static final String METADATA_DISTANCE = "distance";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final PgVectorFilterExpressionConverter filterConverter = new PgVectorFilterExpressionConverter();
+
+    private final VectorStorageMode mode;
+
+    private final int dimensions;
+
+    private final int rescoreFactor;
+
+    // The vector store creates the table, so it must be initialized before the index below
+    public VectorSearchRepository(JdbcTemplate jdbcTemplate, VectorStore vectorStore, ObjectMapper objectMapper,
+            @Value("${app.vector-storage.mode:float}") String mode,
+            @Value("${spring.ai.vectorstore.pgvector.dimensions:768}") int dimensions,
+            @Value("${app.vector-storage.rescore-factor:4}") int rescoreFactor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.mode = VectorStorageMode.valueOf(mode.toUpperCase(Locale.ROOT));
+        this.dimensions = dimensions;
+        this.rescoreFactor = Math.max(1, rescoreFactor);
+    }
+
+    // A build takes as long as the table is large, so it doesn't hold up startup (and the probes). Replicas starting
+    // together take turns on a session advisory lock: the one holding it migrates, the others leave it to that one.
+    // Nothing is dropped while any index of vector_store is being built, since an invalid index may be another
+    // replica's build in progress rather than one left behind by an interrupted build.
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateIndex() {
+        jdbcTemplate.execute((Connection connection) -> {
+            try (Statement statement = connection.createStatement()) {
+                if (!tryLock(statement, "pg_try_advisory_lock")) {
+                    log.info("Vector index {} is being migrated by another replica.", mode.indexName());
+                    return null;
+                }
+                try {
+                    migrateIndex(statement);
+                } finally {
+                    // Session lock, the connection goes back to the pool
+                    tryLock(statement, "pg_advisory_unlock");
+                }
+            }
+            return null;
+        });
+    }
+
+    private void migrateIndex(Statement statement) throws SQLException {
+        if (indexBuildInProgress(statement)) {
+            log.info("An index of vector_store is being built, vector index {} is left as it is.", mode.indexName());
+            return;
+        }
+        if (!indexIsValid(statement, mode.indexName())) {
+            // Left behind by an interrupted concurrent build
+            statement.execute("DROP INDEX IF EXISTS " + mode.indexName());
+            log.info("Building vector index {}, searches scan the table until it is ready...", mode.indexName());
+            statement.execute(mode.createIndexSql(dimensions, true));
+            log.info("Vector index {} built.", mode.indexName());
+        }
+        for (VectorStorageMode other : VectorStorageMode.values()) {
+            if (other != mode) {
+                statement.execute("DROP INDEX IF EXISTS " + other.indexName());
+            }
+        }
+    }
+
+    private static boolean tryLock(Statement statement, String function) throws SQLException {
+        try (ResultSet rs = statement.executeQuery("SELECT " + function + "(hashtext('vector_index_migration'))")) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    private static boolean indexBuildInProgress(Statement statement) throws SQLException {
+        try (ResultSet rs = statement.executeQuery(
+                "SELECT 1 FROM pg_stat_progress_create_index WHERE relid = to_regclass('vector_store')")) {
+            return rs.next();
+        }
+    }
+
+    private static boolean indexIsValid(Statement statement, String indexName) throws SQLException {
+        try (ResultSet rs = statement.executeQuery(
+                "SELECT indisvalid FROM pg_index WHERE indexrelid = to_regclass('" + indexName + "')")) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    public VectorStorageMode mode() {
+        return mode;
+    }
+
+    public boolean quantized() {
+        return mode != VectorStorageMode.FLOAT;
+    }
+
+    public void dropIndex() {
+        jdbcTemplate.execute("DROP INDEX IF EXISTS " + mode.indexName());
+    }
+
+    // For loads that dropped the index on purpose. Builds it with more memory and parallel workers than the
+    // defaults, so the graph fits in memory (a build that spills to disk is many times slower).
+    // Blocks writes to vector_store while it runs.
+    public void createIndex(String maintenanceWorkMem) {
+        if (!maintenanceWorkMem.matches("[0-9]+[kMG]B")) {
+            throw new IllegalArgumentException("Invalid maintenance_work_mem: " + maintenanceWorkMem);
+        }
+        jdbcTemplate.execute((Connection connection) -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET maintenance_work_mem = '" + maintenanceWorkMem + "'");
+                statement.execute("SET max_parallel_maintenance_workers = 4");
+                try {
+                    statement.execute(mode.createIndexSql(dimensions, false));
+                } finally {
+                    // The connection goes back to the pool
+                    statement.execute("RESET maintenance_work_mem");
+                    statement.execute("RESET max_parallel_maintenance_workers");
+                }
+            }
+            return null;
+        });
+    }
+
+    // Chunks matching the filter, to decide whether an exact search is affordable
+    public int count(Filter.Expression filter) {
+        String jsonPathFilter = filterConverter.convertExpression(filter);
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM vector_store WHERE metadata::jsonb @@ ?::jsonpath", Integer.class, jsonPathFilter);
+    }
+
+    // Approximate search: the index of the storage mode returns the shortlist (topK, or rescoreFactor * topK for
+    // the reduced-precision modes), which is then ordered by the exact cosine distance of the stored float vectors.
+    // efSearch is the HNSW search list for this query only (raised to the shortlist size if smaller).
+    // Exact search: the HNSW index is not used at all and every distance is computed, only meant for small scopes.
+    // Results carry the distance in their metadata and 1 - distance as score, like the ones of the vector store.
+    public List<Document> search(float[] queryEmbedding, Filter.Expression filter, int topK, int efSearch, boolean exact) {
+        String jsonPathFilter = filter != null ? filterConverter.convertExpression(filter) : null;
+        PGvector query = new PGvector(queryEmbedding);
+        int shortlist = exact || !quantized() ? topK : topK * rescoreFactor;
+        String sql = (exact ? VectorStorageMode.FLOAT : mode).searchSql(dimensions);
+
+        return jdbcTemplate.execute((Connection connection) -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement();
+                    PreparedStatement ps = connection.prepareStatement(sql)) {
+                // SET LOCAL only lasts until the end of this transaction
+                if (exact) {
+                    // Bitmap scans (the metadata filter) stay allowed
+                    statement.execute("SET LOCAL enable_indexscan = off");
+                } else {
+                    statement.execute("SET LOCAL hnsw.ef_search = " + Math.max(efSearch, shortlist));
+                }
+
+                ps.setObject(1, query);
+                ps.setString(2, jsonPathFilter);
+                ps.setString(3, jsonPathFilter);
+                ps.setObject(4, query);
+                ps.setInt(5, shortlist);
+                ps.setInt(6, topK);
+
+                List<Document> results = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Map<String, Object> metadata = parseMetadata(rs.getString("metadata"));
+                        double distance = rs.getDouble("distance");
+                        metadata.put(METADATA_DISTANCE, (float) distance);
+                        results.add(Document.builder().id(rs.getString("id")).text(rs.getString("content")).metadata(metadata).score(1 - distance).build());
+                    }
+                }
+                connection.commit();
+                return results;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    private Map<String, Object> parseMetadata(String json) {
+        if (json == null) {
+            return new HashMap<>();
+        }
+        try {
+            return objectMapper.readValue(json, METADATA_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Invalid chunk metadata: " + json, e);
+        }
+    }
+}
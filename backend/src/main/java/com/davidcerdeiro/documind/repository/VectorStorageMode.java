@@ -0,0 +1,56 @@
+package com.davidcerdeiro.documind.repository;
+
+// How the embeddings of vector_store are indexed for the first pass of a similarity search.
+// The embedding column always keeps the full float32 vectors: the reduced-precision modes index an
+// expression over it and rescore their shortlist against it, so switching modes never rewrites a row.
+//   FLOAT:   HNSW over the vectors themselves (4 bytes per dimension), exact distances
+//   HALFVEC: HNSW over embedding::halfvec (2 bytes per dimension), near-identical ranking at half the index size
+//   BINARY:  HNSW over binary_quantize(embedding) (1 bit per dimension, Hamming distance), ~1/32 of the size;
+//            coarse on its own, so it relies on a larger shortlist being rescored
+public enum VectorStorageMode {
+
+    FLOAT("spring_ai_vector_index", "embedding vector_cosine_ops", "embedding <=> ?::vector"),
+
+    HALFVEC("vector_store_embedding_halfvec_idx", "(embedding::halfvec(%1$d)) halfvec_cosine_ops", "embedding::halfvec(%1$d) <=> ?::halfvec(%1$d)"),
+
+    BINARY("vector_store_embedding_binary_idx", "(binary_quantize(embedding)::bit(%1$d)) bit_hamming_ops",
+            "binary_quantize(embedding)::bit(%1$d) <~> binary_quantize(?::vector)");
+
+    private final String indexName;
+
+    private final String indexExpression;
+
+    private final String distanceExpression;
+
+    VectorStorageMode(String indexName, String indexExpression, String distanceExpression) {
+        this.indexName = indexName;
+        this.indexExpression = indexExpression;
+        this.distanceExpression = distanceExpression;
+    }
+
+    // FLOAT keeps the name the vector store gives its own index, so existing installations already have it
+    public String indexName() {
+        return indexName;
+    }
+
+    public String createIndexSql(int dimensions, boolean concurrently) {
+        return "CREATE INDEX " + (concurrently ? "CONCURRENTLY " : "") + "IF NOT EXISTS " + indexName
+                + " ON vector_store USING hnsw (" + indexExpression.formatted(dimensions) + ")";
+    }
+
+    // Parameters: query vector (exact distance), jsonpath filter (or null) twice, query vector (first pass),
+    // shortlist size, top k. The inner query is the index scan, the outer one the exact float rescoring.
+    public String searchSql(int dimensions) {
+        return """
+            SELECT id, content, metadata, embedding <=> ?::vector AS distance
+            FROM (
+                SELECT id, content, metadata, embedding FROM vector_store
+                WHERE ?::text IS NULL OR metadata::jsonb @@ ?::jsonpath
+                ORDER BY %s
+                LIMIT ?
+            ) shortlist
+            ORDER BY distance
+            LIMIT ?
+            """.formatted(distanceExpression.formatted(dimensions));
+    }
+}
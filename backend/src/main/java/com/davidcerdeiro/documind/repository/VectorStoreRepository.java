@@ -0,0 +1,171 @@
+package com.davidcerdeiro.documind.repository;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.pgvector.PgVectorFilterExpressionConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.davidcerdeiro.documind.cache.TextFingerprint;
+import com.davidcerdeiro.documind.dto.DocumentSummary;
+import com.davidcerdeiro.documind.dto.StoredChunk;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+
+// Per-document operations on the chunks in vector_store, which Spring AI's VectorStore has no API for.
+// Every chunk carries document_id, collection and job_id in its metadata, and content_hash, the fingerprint of its text.
+// Also owns the full-text side of the table: a generated tsvector column with a GIN index, used by lexical search.
+@Repository
+public class VectorStoreRepository {
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {};
+
+    // Metadata key of the ts_rank_cd score of lexical results
+    public static final String METADATA_LEXICAL_RANK = "lexical_rank";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final PgVectorFilterExpressionConverter filterConverter = new PgVectorFilterExpressionConverter();
+
+    // 'simple' keeps every token as written (part numbers, clause ids, names) in any language.
+    // A language configuration ('spanish', 'english') adds stemming and stop words; changing it
+    // requires dropping the content_tsv column so it is generated again.
+    private final String textSearchConfig;
+
+    // The vector store creates the table, so it must be initialized before the indexes below
+    public VectorStoreRepository(JdbcTemplate jdbcTemplate, VectorStore vectorStore, ObjectMapper objectMapper,
+            @Value("${app.retrieval.hybrid.text-search-config:simple}") String textSearchConfig) {
+        if (!textSearchConfig.matches("[a-z_]+")) {
+            throw new IllegalArgumentException("Invalid text search configuration: " + textSearchConfig);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.textSearchConfig = textSearchConfig;
+    }
+
+    @PostConstruct
+    void initializeSchema() {
+        // Deleting or replacing a document, and listing them
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS vector_store_document_id_idx ON vector_store ((metadata->>'document_id'))");
+        // Search filters: the vector store matches them with metadata::jsonb @@ jsonpath
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS vector_store_metadata_idx ON vector_store USING gin ((metadata::jsonb) jsonb_path_ops)");
+        // Lexical search. Generated, so it stays in sync with every insert and upsert made by the vector store.
+        jdbcTemplate.execute("ALTER TABLE vector_store ADD COLUMN IF NOT EXISTS content_tsv tsvector "
+                + "GENERATED ALWAYS AS (to_tsvector('" + textSearchConfig + "'::regconfig, coalesce(content, ''))) STORED");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS vector_store_content_tsv_idx ON vector_store USING gin (content_tsv)");
+    }
+
+    // Chunks containing any of the terms of the question, best first.
+    // The terms are OR'ed, so a chunk matching the exact part number but none of the other words is still found;
+    // ts_rank_cd (normalized by document length) favours chunks where more of the terms appear close together.
+    public List<Document> lexicalSearch(String question, Filter.Expression filter, int limit) {
+        String jsonPathFilter = filter != null ? filterConverter.convertExpression(filter) : null;
+
+        return jdbcTemplate.query("""
+            SELECT id, content, metadata, ts_rank_cd(content_tsv, query, 1) AS rank
+            FROM vector_store, (SELECT replace(plainto_tsquery(?::regconfig, ?)::text, ' & ', ' | ')::tsquery AS query) terms
+            WHERE content_tsv @@ query AND (?::text IS NULL OR metadata::jsonb @@ ?::jsonpath)
+            ORDER BY rank DESC
+            LIMIT ?
+            """,
+            (rs, rowNum) -> {
+                Map<String, Object> metadata = parseMetadata(rs.getString("metadata"));
+                double rank = rs.getDouble("rank");
+                metadata.put(METADATA_LEXICAL_RANK, rank);
+                return Document.builder().id(rs.getString("id")).text(rs.getString("content")).metadata(metadata).score(rank).build();
+            },
+            textSearchConfig, question, jsonPathFilter, jsonPathFilter, limit);
+    }
+
+    private Map<String, Object> parseMetadata(String json) {
+        if (json == null) {
+            return new HashMap<>();
+        }
+        try {
+            return objectMapper.readValue(json, METADATA_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Invalid chunk metadata: " + json, e);
+        }
+    }
+
+    public int deleteDocument(String documentId) {
+        return jdbcTemplate.update("DELETE FROM vector_store WHERE metadata->>'document_id' = ?", documentId);
+    }
+
+    // Chunks of the document not written by jobId (the versions it replaces) in document order, with the
+    // fingerprint of their text. Chunks stored before content_hash existed are hashed from their content here.
+    public List<StoredChunk> findOtherVersions(String documentId, String jobId) {
+        return jdbcTemplate.query("""
+            SELECT id, metadata, CASE WHEN metadata->>'content_hash' IS NULL THEN content END AS content
+            FROM vector_store
+            WHERE metadata->>'document_id' = ? AND metadata->>'job_id' IS DISTINCT FROM ?
+            ORDER BY (metadata->>'chunk_index')::int NULLS LAST
+            """,
+            (rs, rowNum) -> {
+                Map<String, Object> metadata = parseMetadata(rs.getString("metadata"));
+                String contentHash = metadata.get("content_hash") instanceof String hash ? hash : TextFingerprint.sha256(rs.getString("content"));
+                return new StoredChunk(rs.getString("id"), contentHash, metadata);
+            },
+            documentId, jobId);
+    }
+
+    // Makes the chunks of jobId the current version of the document once the job has written all of them, in one
+    // transaction: the chunks of earlier versions listed in keptIds stay, those in movedMetadata with their new
+    // metadata (position, page, file name; they keep the job_id of the job that wrote them), and every other chunk
+    // of an earlier version is deleted.
+    // Only safe with one job per document at a time (see JobRepository), a concurrent job's chunks would be deleted too.
+    // Returns the number of chunks deleted.
+    @Transactional
+    public int replaceOtherVersions(String documentId, String jobId, Collection<String> keptIds, Map<String, Map<String, Object>> movedMetadata) {
+        if (!movedMetadata.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE vector_store SET metadata = ?::json WHERE id = ?",
+                    movedMetadata.entrySet().stream()
+                            .map(moved -> new Object[] { toJson(moved.getValue()), UUID.fromString(moved.getKey()) })
+                            .toList());
+        }
+        return jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "DELETE FROM vector_store WHERE metadata->>'document_id' = ? AND metadata->>'job_id' IS DISTINCT FROM ? AND id <> ALL (?)");
+            ps.setString(1, documentId);
+            ps.setString(2, jobId);
+            ps.setArray(3, connection.createArrayOf("uuid", keptIds.stream().map(UUID::fromString).toArray()));
+            return ps;
+        });
+    }
+
+    private String toJson(Map<String, Object> metadata) {
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not serialize the chunk metadata", e);
+        }
+    }
+
+    public List<DocumentSummary> findDocuments(String collection) {
+        return jdbcTemplate.query("""
+            SELECT metadata->>'document_id' AS document_id, max(metadata->>'collection') AS collection,
+                   max(metadata->>'file_name') AS file_name, count(*) AS chunks
+            FROM vector_store
+            WHERE metadata->>'document_id' IS NOT NULL AND (?::text IS NULL OR metadata->>'collection' = ?)
+            GROUP BY metadata->>'document_id'
+            ORDER BY file_name
+            """,
+            (rs, rowNum) -> new DocumentSummary(rs.getString("document_id"), rs.getString("collection"), rs.getString("file_name"), rs.getInt("chunks")),
+            collection, collection);
+    }
+}
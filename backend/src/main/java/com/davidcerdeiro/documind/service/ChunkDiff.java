@@ -0,0 +1,73 @@
+package com.davidcerdeiro.documind.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.ai.document.Document;
+
+import com.davidcerdeiro.documind.dto.StoredChunk;
+
+// Matches the chunks of a new version of a document with the stored chunks of the versions it replaces, by the
+// fingerprint of their text (content_hash). A chunk whose text is already stored reuses that row and its embedding,
+// so a re-upload with a typo fixed only embeds the chunks of the page that changed.
+// Repeated texts (boilerplate) are matched one to one, in document order. Reused rows whose metadata differs
+// (the chunk moved, its page or the file name changed) are given the metadata of the new chunk, except job_id:
+// a reused row still belongs to the job that wrote it. A job resumed after its swap committed then finds the
+// same rows to reuse again, instead of taking them for chunks of its own and writing them a second time.
+// Not thread-safe, it is fed by the thread draining the ingestion pipeline.
+public final class ChunkDiff {
+
+    private final Map<String, Deque<StoredChunk>> stored = new HashMap<>();
+
+    private final List<String> reusedIds = new ArrayList<>();
+
+    private final Map<String, Map<String, Object>> movedMetadata = new HashMap<>();
+
+    public ChunkDiff(List<StoredChunk> previous) {
+        previous.forEach(chunk -> stored.computeIfAbsent(chunk.contentHash(), hash -> new ArrayDeque<>()).add(chunk));
+    }
+
+    // True if a stored chunk has the same text, which then doesn't need to be embedded or written
+    public boolean reuse(Document chunk) {
+        Deque<StoredChunk> candidates = stored.get((String) chunk.getMetadata().get(DocumentService.METADATA_CONTENT_HASH));
+        StoredChunk match = candidates != null ? candidates.poll() : null;
+        if (match == null) {
+            return false;
+        }
+
+        reusedIds.add(match.id());
+        if (!sameMetadata(match.metadata(), chunk.getMetadata())) {
+            Map<String, Object> metadata = new HashMap<>(chunk.getMetadata());
+            metadata.put(DocumentService.METADATA_JOB_ID, match.metadata().get(DocumentService.METADATA_JOB_ID));
+            movedMetadata.put(match.id(), metadata);
+        }
+        return true;
+    }
+
+    public List<String> reusedIds() {
+        return reusedIds;
+    }
+
+    // Row id -> metadata of the new chunk, for the reused rows whose metadata changed
+    public Map<String, Map<String, Object>> movedMetadata() {
+        return movedMetadata;
+    }
+
+    // job_id only records which job wrote the row, the row isn't updated just for it
+    private static boolean sameMetadata(Map<String, Object> stored, Map<String, Object> current) {
+        if (stored.size() != current.size()) {
+            return false;
+        }
+        for (Map.Entry<String, Object> entry : current.entrySet()) {
+            if (!DocumentService.METADATA_JOB_ID.equals(entry.getKey()) && !Objects.equals(entry.getValue(), stored.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,191 @@
+package com.davidcerdeiro.documind.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Builds the <context> of the prompt from the retrieved chunks, in as few tokens as possible:
+// 1. Consecutive chunks of the same document are merged into one fragment, and the text they share is kept once.
+// 2. Fragments that are near-duplicates of a better ranked one (same boilerplate in several documents) are dropped.
+// 3. Fragments are packed in rank order into maxTokens; one that doesn't fit is skipped for smaller ones after it.
+// Tokens are counted with the cl100k encoding, an estimate of what the chat model's tokenizer will see.
+@Component
+public class ContextBuilder {
+
+    private final TokenCountEstimator tokenCounter = new JTokkitTokenCountEstimator();
+
+    private final int maxTokens;
+
+    private final int minOverlapChars;
+
+    private final double duplicateThreshold;
+
+    private final DistributionSummary tokensSaved;
+
+    public ContextBuilder(MeterRegistry meterRegistry,
+            @Value("${app.context.max-tokens:1500}") int maxTokens,
+            @Value("${app.context.min-overlap-chars:20}") int minOverlapChars,
+            @Value("${app.context.duplicate-threshold:0.9}") double duplicateThreshold) {
+        this.maxTokens = maxTokens;
+        this.minOverlapChars = minOverlapChars;
+        this.duplicateThreshold = duplicateThreshold;
+        this.tokensSaved = DistributionSummary.builder("documind.context.tokens.saved")
+                .description("Prompt context tokens saved by merging, deduplication and the token budget")
+                .baseUnit("tokens")
+                .register(meterRegistry);
+    }
+
+    // chunks are in relevance order, the best first
+    public BuiltContext build(List<Document> chunks) {
+        int originalTokens = chunks.stream().mapToInt(chunk -> tokenCounter.estimate(fragment(chunk.getText()))).sum();
+
+        List<String> fragments = new ArrayList<>();
+        int tokens = 0;
+        List<Set<String>> keptShingles = new ArrayList<>();
+
+        for (String text : mergeAdjacent(chunks)) {
+            Set<String> shingles = shingles(text);
+            if (keptShingles.stream().anyMatch(kept -> jaccard(kept, shingles) >= duplicateThreshold)) {
+                continue;
+            }
+
+            String fragment = fragment(text);
+            int fragmentTokens = tokenCounter.estimate(fragment);
+            // The best fragment always goes in, even on its own it may be over the budget
+            if (!fragments.isEmpty() && tokens + fragmentTokens > maxTokens) {
+                continue;
+            }
+
+            fragments.add(fragment);
+            keptShingles.add(shingles);
+            tokens += fragmentTokens;
+        }
+
+        BuiltContext context = new BuiltContext(String.join(System.lineSeparator(), fragments), tokens, originalTokens);
+        tokensSaved.record(context.tokensSaved());
+        return context;
+    }
+
+    private static String fragment(String text) {
+        return "<fragment>" + System.lineSeparator() + text + System.lineSeparator() + "</fragment>";
+    }
+
+    // Chunks stored with a document id and chunk index are merged with the ones right before and after them,
+    // each group keeping the rank of its best chunk. Chunks without them (ingested before chunk_index existed)
+    // are left as they are.
+    private List<String> mergeAdjacent(List<Document> chunks) {
+        List<List<Document>> groups = new ArrayList<>();
+
+        for (Document chunk : chunks) {
+            List<Document> group = groups.stream()
+                    .filter(candidate -> candidate.stream().anyMatch(member -> adjacent(member, chunk)))
+                    .findFirst()
+                    .orElse(null);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.add(group);
+            }
+            group.add(chunk);
+        }
+
+        // A chunk can link two groups that were separate so far (chunk 3 arriving after 2 and 4)
+        for (int i = 0; i < groups.size(); i++) {
+            for (int j = groups.size() - 1; j > i; j--) {
+                List<Document> first = groups.get(i);
+                List<Document> second = groups.get(j);
+                if (first.stream().anyMatch(a -> second.stream().anyMatch(b -> adjacent(a, b)))) {
+                    first.addAll(groups.remove(j));
+                }
+            }
+        }
+
+        return groups.stream().map(this::join).toList();
+    }
+
+    private static boolean adjacent(Document a, Document b) {
+        Integer indexA = chunkIndex(a);
+        Integer indexB = chunkIndex(b);
+        Object documentA = a.getMetadata().get(DocumentService.METADATA_DOCUMENT_ID);
+        return indexA != null && indexB != null && documentA != null
+                && documentA.equals(b.getMetadata().get(DocumentService.METADATA_DOCUMENT_ID))
+                && Math.abs(indexA - indexB) == 1;
+    }
+
+    private static Integer chunkIndex(Document chunk) {
+        return chunk.getMetadata().get(DocumentService.METADATA_CHUNK_INDEX) instanceof Number index ? index.intValue() : null;
+    }
+
+    // Group members in document order, without repeating the text two neighbours share
+    private String join(List<Document> group) {
+        List<Document> ordered = group.stream()
+                .sorted(Comparator.comparing(ContextBuilder::chunkIndex, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .toList();
+
+        StringBuilder text = new StringBuilder(ordered.get(0).getText());
+        for (Document next : ordered.subList(1, ordered.size())) {
+            String nextText = next.getText();
+            int overlap = overlap(text, nextText);
+            text.append(overlap > 0 ? "" : System.lineSeparator()).append(nextText, overlap, nextText.length());
+        }
+        return text.toString();
+    }
+
+    // Length of the longest end of `previous` that `next` starts with, 0 if shorter than minOverlapChars
+    private int overlap(CharSequence previousText, String next) {
+        String previous = previousText.toString();
+        int max = Math.min(previous.length(), next.length());
+        for (int length = max; length >= minOverlapChars; length--) {
+            if (next.regionMatches(0, previous, previous.length() - length, length)) {
+                return length;
+            }
+        }
+        return 0;
+    }
+
+    // Word 3-grams, ignoring case and punctuation
+    private static Set<String> shingles(String text) {
+        String[] words = text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+");
+        List<String> tokens = new ArrayList<>();
+        for (String word : words) {
+            if (!word.isEmpty()) {
+                tokens.add(word);
+            }
+        }
+        if (tokens.size() < 3) {
+            return new HashSet<>(tokens);
+        }
+        Set<String> shingles = new HashSet<>();
+        for (int i = 0; i + 3 <= tokens.size(); i++) {
+            shingles.add(tokens.get(i) + " " + tokens.get(i + 1) + " " + tokens.get(i + 2));
+        }
+        return shingles;
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        long shared = a.stream().filter(b::contains).count();
+        return (double) shared / (a.size() + b.size() - shared);
+    }
+
+    // tokensSaved is what the budget, merging and deduplication removed from the chunks as retrieved
+    public record BuiltContext(String text, int tokens, int originalTokens) {
+
+        public int tokensSaved() {
+            return Math.max(0, originalTokens - tokens);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.davidcerdeiro.documind.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.davidcerdeiro.documind.repository.CorpusVersionRepository;
+
+// Version of the indexed corpus, incremented on every write to the vector store.
+// Caches tag their entries with the version they were computed against and ignore older ones,
+// so a chunk that was added or removed is never hidden behind a cached result.
+// The version lives in Postgres, so a write made through any replica invalidates the caches of all of them.
+// It is incremented once the write has committed: a search that read the old version and raced the write
+// either sees the new version when it tries to cache its result, or caches it under a version that is gone.
+@Component
+public class CorpusVersion {
+
+    private final CorpusVersionRepository repository;
+
+    private final AtomicLong version = new AtomicLong();
+
+    // Only covers this instance, for tests and benchmarks that run without a database
+    public CorpusVersion() {
+        this(null);
+    }
+
+    @Autowired
+    public CorpusVersion(CorpusVersionRepository repository) {
+        this.repository = repository;
+    }
+
+    public long current() {
+        return repository != null ? repository.current() : version.get();
+    }
+
+    public long increment() {
+        return repository != null ? repository.increment() : version.incrementAndGet();
+    }
+}
@@ -1,27 +1,72 @@
 package com.davidcerdeiro.documind.service;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.reader.tika.TikaDocumentReader;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
 import org.springframework.ai.transformer.splitter.TokenTextSplitter;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.davidcerdeiro.documind.cache.AnswerCache;
+import com.davidcerdeiro.documind.cache.RetrievalCache;
+import com.davidcerdeiro.documind.cache.TextFingerprint;
+import com.davidcerdeiro.documind.concurrency.ConcurrencyLimitAdvisor;
+import com.davidcerdeiro.documind.concurrency.ConcurrencyLimiter;
+import com.davidcerdeiro.documind.repository.VectorBulkWriter;
+import com.davidcerdeiro.documind.repository.VectorSearchRepository;
+import com.davidcerdeiro.documind.service.RetrievalProfiles.RetrievalProfile;
+import com.davidcerdeiro.documind.repository.VectorStoreRepository;
+import com.davidcerdeiro.documind.dto.ChatResponse;
+import com.davidcerdeiro.documind.dto.ChatStreamEvent;
+import com.davidcerdeiro.documind.dto.BatchFileStatus;
+import com.davidcerdeiro.documind.dto.BatchStatus;
+import com.davidcerdeiro.documind.dto.DocumentInfo;
+import com.davidcerdeiro.documind.dto.DocumentSummary;
 import com.davidcerdeiro.documind.dto.JobStatus;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
 @Service
 public class DocumentService {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentService.class);
     
     @Value("${app.document.chunk-size}")
     public int chunkSize;
@@ -29,128 +74,737 @@ public class DocumentService {
     @Value("${app.document.chunk-overlap}")
     public int chunkOverlap;
 
-    private final VectorStore vectorStore;
+    // Page cleaning, see TextNormalizer
+    @Value("${app.document.dehyphenate:true}")
+    public boolean dehyphenate;
 
-    private final ChatClient chatClient;
+    @Value("${app.document.strip-headers:true}")
+    public boolean stripHeaders;
+
+    // "parallel" (PDFBox, page ranges extracted side by side on the extraction pool) or "tika" (one thread per document).
+    // Files that aren't PDFs always go through Tika.
+    @Value("${app.document.extractor:parallel}")
+    public String extractor;
+
+    @Value("${app.document.pages-per-range:16}")
+    public int pagesPerRange;
+
+    // A new version of a document only embeds the chunks whose text isn't already stored, see ChunkDiff
+    @Value("${app.document.incremental-updates:true}")
+    public boolean incrementalUpdates;
+
+    @Value("${app.document.batch-size:32}")
+    public int batchSize;
+
+    @Value("${app.document.max-concurrent-batches:4}")
+    public int maxConcurrentBatches;
+
+    @Value("${app.document.pipeline-capacity:256}")
+    public int pipelineCapacity;
+
+    @Value("${app.cache.answer.enabled:true}")
+    public boolean answerCacheEnabled;
+
+    // "vector" (HNSW cosine only) or "hybrid" (vector + full-text, merged with reciprocal rank fusion)
+    @Value("${app.retrieval.strategy:vector}")
+    public String retrievalStrategy;
+
+    @Value("${app.retrieval.hybrid.candidates:20}")
+    public int hybridCandidates;
+
+    @Value("${app.retrieval.hybrid.rrf-k:60}")
+    public int rrfK;
+
+    // Two-stage retrieval: fetch the candidates of the retrieval profile, then keep the TOP_K best according to the re-ranker
+    @Value("${app.retrieval.rerank.enabled:true}")
+    public boolean rerankEnabled;
 
-    private final Map<String, JobStatus> processStatus = new ConcurrentHashMap<>();
+    // Chunks passed to the chat model
+    private static final int TOP_K = 8;
+
+    private static final String NO_INFO_MARKER = "[[NO_INFO_FOUND]]";
+
+    // Chunk metadata identifying the document it belongs to, usable in search filters
+    public static final String METADATA_DOCUMENT_ID = "document_id";
+
+    public static final String METADATA_COLLECTION = "collection";
+
+    public static final String METADATA_FILE_NAME = "file_name";
+
+    public static final String METADATA_JOB_ID = "job_id";
+
+    // Position of the chunk in its document, lets the context builder merge neighbouring chunks
+    public static final String METADATA_CHUNK_INDEX = "chunk_index";
+
+    // Fingerprint of the chunk text, lets a new version of the document reuse the chunks that didn't change
+    public static final String METADATA_CONTENT_HASH = "content_hash";
+
+    // Marks the end of the chunk stream in the ingestion pipeline
+    private static final Document END_OF_DOCUMENT = new Document("<end-of-document>");
+
+    private final ChatClient chatClient;
 
     private final JdbcTemplate jdbcTemplate;
 
-    public DocumentService(VectorStore vectorStore, ChatClient chatClient, JdbcTemplate jdbcTemplate) {
-        this.vectorStore = vectorStore;
+    private final Executor embeddingExecutor;
+
+    private final Executor parsingExecutor;
+
+    private final RetrievalCache retrievalCache;
+
+    private final CorpusVersion corpusVersion;
+
+    private final EmbeddingModel embeddingModel;
+
+    private final AnswerCache answerCache;
+
+    private final ConcurrencyLimiter pgvectorLimiter;
+
+    private final ConcurrencyLimiter ollamaLimiter;
+
+    private final JobStore jobStore;
+
+    private final VectorStoreRepository vectorStoreRepository;
+
+    private final Executor retrievalExecutor;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ContextBuilder contextBuilder;
+
+    private final LexicalReranker reranker;
+
+    // The upload is only kept to resume an interrupted job
+    private final UploadSpool uploadSpool;
+
+    // Runs the files of a bulk upload side by side
+    private final Executor batchExecutor;
+
+    private final VectorBulkWriter vectorWriter;
+
+    private final VectorSearchRepository vectorSearchRepository;
+
+    private final RetrievalProfiles retrievalProfiles;
+
+    private final StageMetrics stageMetrics;
+
+    private final ForkJoinPool extractionPool;
+
+    // Documents being ingested, counting every file of a bulk upload
+    private final AtomicInteger activeJobs = new AtomicInteger();
+
+    // Same batching as the vector store uses when it embeds by itself
+    private final BatchingStrategy batchingStrategy = new TokenCountBatchingStrategy();
+
+    // Shared by every job, so concurrent uploads don't multiply the load on Ollama
+    private Semaphore embeddingPermits;
+
+    public DocumentService(ChatClient chatClient, JdbcTemplate jdbcTemplate,
+            @Qualifier("embeddingExecutor") Executor embeddingExecutor, @Qualifier("parsingExecutor") Executor parsingExecutor,
+            RetrievalCache retrievalCache, CorpusVersion corpusVersion, EmbeddingModel embeddingModel, AnswerCache answerCache,
+            @Qualifier("pgvectorLimiter") ConcurrencyLimiter pgvectorLimiter, @Qualifier("ollamaLimiter") ConcurrencyLimiter ollamaLimiter,
+            JobStore jobStore,
+            VectorStoreRepository vectorStoreRepository, @Qualifier("retrievalExecutor") Executor retrievalExecutor,
+            MeterRegistry meterRegistry, ContextBuilder contextBuilder,
+            LexicalReranker reranker, UploadSpool uploadSpool, @Qualifier("batchExecutor") Executor batchExecutor,
+            VectorBulkWriter vectorWriter, VectorSearchRepository vectorSearchRepository, RetrievalProfiles retrievalProfiles,
+            StageMetrics stageMetrics, @Qualifier("extractionPool") ForkJoinPool extractionPool) {
         this.chatClient = chatClient;
         this.jdbcTemplate = jdbcTemplate;
+        this.embeddingExecutor = embeddingExecutor;
+        this.parsingExecutor = parsingExecutor;
+        this.retrievalCache = retrievalCache;
+        this.corpusVersion = corpusVersion;
+        this.embeddingModel = embeddingModel;
+        this.answerCache = answerCache;
+        this.pgvectorLimiter = pgvectorLimiter;
+        this.ollamaLimiter = ollamaLimiter;
+        this.jobStore = jobStore;
+        this.vectorStoreRepository = vectorStoreRepository;
+        this.retrievalExecutor = retrievalExecutor;
+        this.meterRegistry = meterRegistry;
+        this.contextBuilder = contextBuilder;
+        this.reranker = reranker;
+        this.uploadSpool = uploadSpool;
+        this.batchExecutor = batchExecutor;
+        this.vectorWriter = vectorWriter;
+        this.vectorSearchRepository = vectorSearchRepository;
+        this.retrievalProfiles = retrievalProfiles;
+        this.stageMetrics = stageMetrics;
+        this.extractionPool = extractionPool;
+    }
+
+    @PostConstruct
+    void initEmbeddingPermits() {
+        int permits = Math.max(1, maxConcurrentBatches);
+        this.embeddingPermits = new Semaphore(permits);
+
+        Gauge.builder("documind.ingestion.batches.active", embeddingPermits, p -> permits - p.availablePermits())
+                .description("Embedding batches being embedded or stored")
+                .register(meterRegistry);
+        Gauge.builder("documind.ingestion.jobs.active", activeJobs, AtomicInteger::get)
+                .description("Documents being ingested, counting every file of a bulk upload")
+                .register(meterRegistry);
     }
 
     // Method to chunk PDF document
     public List<Document> chunkingDocument(Resource document) {
+        List<Document> chunks = new ArrayList<>();
+        streamChunks(document, chunks::add, parsed -> {});
+
+        log.debug("Chunking completed. Total chunks generated: {}", chunks.size());
+
+        return chunks;
+    }
+
+    // Reads the document page by page. Every page is cleaned and split as soon as the reader emits it,
+    // and its chunks are handed to the consumer before the next page is handed over.
+    // parseProgress receives the fraction of pages read so far (0 while the page count is unknown).
+    public void streamChunks(Resource document, Consumer<Document> chunkConsumer, DoubleConsumer parseProgress) {
         // 1. Initial logging
-        System.out.println("Starting PDF reading...");
-        TikaDocumentReader reader = new TikaDocumentReader(document);
-        List<Document> documents = reader.read();
-        System.out.println("PDF read. Pages found: " + documents.size());
-
-        // 2. Cleaning (Corrected for Spanish and Chunking)
-        List<Document> cleanDocuments = documents.stream().map(doc -> {
-        String cleanText = doc.getText()
-                    // Normalizamos saltos de línea extraños pero mantenemos separación de párrafos
-                    .replaceAll("\\r\\n", "\n") 
-                    .replaceAll("[ \\t]+", " ") // Espacios múltiples a uno solo
-                    .trim();
-            return new Document(cleanText, doc.getMetadata());
-        }).toList();
-
-        System.out.println("Cleaning completed. Starting chunking...");
-
-        // 3. Chunking
+        log.debug("Starting PDF reading...");
+        PageReader reader = pageReader(document);
         TokenTextSplitter textSplitter = new TokenTextSplitter(chunkSize, chunkOverlap, 5, 10000, true);
-        List<Document> chunks = textSplitter.apply(cleanDocuments);
-        
-        System.out.println("Chunking completed. Total chunks generated: " + chunks.size());
-        
-        return chunks;
+        TextNormalizer normalizer = new TextNormalizer(dehyphenate, stripHeaders);
+        AtomicInteger pagesRead = new AtomicInteger();
+        // Time spent in the page callback, left out of the read stage
+        AtomicLong callbackNanos = new AtomicLong();
+        long start = System.nanoTime();
+
+        reader.read(page -> {
+            long pageStart = System.nanoTime();
+            // 2. Cleaning, 3. Chunking
+            Document cleaned = stageMetrics.clean().record(() -> new Document(normalizer.normalize(page.getText()), page.getMetadata()));
+            List<Document> chunks = stageMetrics.split().record(() -> textSplitter.split(cleaned));
+            stageMetrics.pages().increment();
+            chunks.forEach(chunkConsumer);
+
+            int totalPages = reader.getTotalPages();
+            parseProgress.accept(totalPages > 0 ? Math.min(1.0, (double) pagesRead.incrementAndGet() / totalPages) : 0);
+            callbackNanos.addAndGet(System.nanoTime() - pageStart);
+        });
+
+        stageMetrics.read().record(System.nanoTime() - start - callbackNanos.get(), TimeUnit.NANOSECONDS);
+        log.debug("PDF read. Pages found: {}", reader.getTotalPages());
+    }
+
+    // Pages always arrive in order, so cleaning and splitting stay on this thread whichever reader is used
+    private PageReader pageReader(Resource document) {
+        if ("parallel".equals(extractor) && ParallelPdfReader.isPdf(document)) {
+            return new ParallelPdfReader(document, extractionPool, pagesPerRange);
+        }
+        return new PageStreamingReader(document);
+    }
+
+    // Registers a job waiting in the IngestionQueue, before it is submitted so a fast worker can't be overwritten.
+    // The file is kept until the job finishes, so it can be resumed after a restart.
+    public void markQueued(String fileId, DocumentInfo document, String uploader, Path file) {
+        jobStore.create(fileId, document, uploader, file, null);
     }
 
-    @Async 
-    public void processFileAsync(String fileId, Resource file) {
+    // Same for a file of a bulk upload
+    public void markQueued(String fileId, DocumentInfo document, String uploader, Path file, String batchId) {
+        jobStore.create(fileId, document, uploader, file, batchId);
+    }
+
+    // Forgets a job that never made it into the queue
+    public void discardJob(String fileId) {
+        jobStore.delete(fileId);
+    }
+
+    // Runs on an IngestionQueue worker.
+    // Parsing runs on the parsing executor and feeds a bounded queue, while this thread drains it
+    // into embedding batches. The first chunks are embedded while later pages are still being parsed,
+    // and at most pipelineCapacity chunks wait in memory.
+    // Chunk ids are derived from the job id and the chunk position, so a job resumed after a crash skips the
+    // chunks it had committed and overwrites (instead of duplicating) the ones that were in flight.
+    // When the document already existed, the new chunks whose text is already stored reuse those rows and
+    // embeddings (with incrementalUpdates), and the rest of the previous chunks are deleted once all the new ones
+    // are stored. Reused chunks aren't counted by the resume watermark, they are never written.
+    public void processFile(String fileId, DocumentInfo document, Resource file) {
+        BlockingQueue<Document> pipeline = new ArrayBlockingQueue<>(Math.max(batchSize, pipelineCapacity));
+        AtomicBoolean cancelled = new AtomicBoolean();
+        CompletableFuture<Void> parsing = null;
+        BatchWriter writer = null;
+        activeJobs.incrementAndGet();
         try {
             // Initial status
-            processStatus.put(fileId, new JobStatus("PROCESSING", 0));
-            
-            List<Document> chunks = this.chunkingDocument(file);
-            
+            jobStore.started(fileId);
+            int resumeFrom = jobStore.committedChunks(fileId);
+
+            writer = new BatchWriter(fileId, resumeFrom);
+            ChunkDiff previous = new ChunkDiff(incrementalUpdates
+                    ? vectorStoreRepository.findOtherVersions(document.documentId(), fileId)
+                    : List.of());
+
+            BatchWriter tracker = writer;
+            parsing = CompletableFuture.runAsync(() -> {
+                try {
+                    streamChunks(file, chunk -> enqueue(pipeline, chunk, cancelled), tracker::parsed);
+                } finally {
+                    enqueue(pipeline, END_OF_DOCUMENT, cancelled);
+                }
+            }, parsingExecutor);
+
             // This will be updating the status internally
-            this.saveDocument(fileId, chunks);
+            int index = 0;
+            int written = 0;
+            for (Document chunk = pipeline.take(); chunk != END_OF_DOCUMENT; chunk = pipeline.take(), index++) {
+                Document numbered = withChunkId(fileId, document, index, chunk);
+                if (!previous.reuse(numbered) && written++ >= resumeFrom) {
+                    writer.add(numbered);
+                }
+            }
+            join(parsing);
+            writer.finish();
+
+            int deleted = vectorStoreRepository.replaceOtherVersions(document.documentId(), fileId, previous.reusedIds(), previous.movedMetadata());
+            stageMetrics.reusedChunks().increment(previous.reusedIds().size());
+            if (deleted > 0 || !previous.reusedIds().isEmpty()) {
+                corpusVersion.increment();
+                log.info("Replaced previous version of document {}: {} chunks reused ({} moved), {} written, {} deleted.", document.documentId(),
+                        previous.reusedIds().size(), previous.movedMetadata().size(), written, deleted);
+            }
             
             // Final status
-            processStatus.put(fileId, new JobStatus("COMPLETED", 100));
-            System.out.println("Process " + fileId + " completed.");
+            jobStore.completed(fileId);
+            stageMetrics.completedJobs().increment();
+            log.info("Process {} completed.", fileId);
+            uploadSpool.release(file);
             
         } catch (Exception e) {
-           
-            processStatus.put(fileId, new JobStatus("ERROR", 0, e.getMessage()));
-            e.printStackTrace();
+            // Stops the parsing stage at its next chunk, and unblocks it if it is waiting for room in the queue
+            cancelled.set(true);
+            // Nothing may still be reading the file or reporting progress once it is released and the job marked failed
+            if (parsing != null) {
+                awaitQuietly(parsing);
+            }
+            if (writer != null) {
+                writer.awaitSubmitted();
+            }
+
+            jobStore.failed(fileId, e.getMessage());
+            stageMetrics.failedJobs().increment();
+            log.error("Process {} failed.", fileId, e);
+            uploadSpool.release(file);
         } finally {
-            
+            activeJobs.decrementAndGet();
+        }
+    }
+
+    // Runs on an IngestionQueue worker: the whole batch takes one place in the queue, so a bulk upload is
+    // scheduled fairly against the other uploaders. Its files are processed batch-parallelism at a time,
+    // parsing on the parsing executor (one thread per core by default), while the embedding batches of all of
+    // them share embeddingPermits and the Ollama limiter like any other job. Each file is still its own job:
+    // a failure only fails that file, and a file interrupted by a restart is resumed on its own.
+    // With deferIndex the HNSW index is dropped for the duration of the batch and built once at the end,
+    // which is much faster for a large initial load (searches scan the whole table in the meantime).
+    public void processBatch(String batchId, List<BatchFile> files, boolean deferIndex) {
+        if (deferIndex) {
+            vectorWriter.deferIndex(batchId);
+        }
+        try {
+            CompletableFuture<?>[] jobs = files.stream()
+                    .map(file -> CompletableFuture.runAsync(() -> processFile(file.jobId(), file.document(), file.resource()), batchExecutor))
+                    .toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(jobs).join();
+            log.info("Batch of {} files processed.", files.size());
+        } finally {
+            if (deferIndex) {
+                vectorWriter.restoreIndex(batchId);
+            }
+        }
+    }
+
+    private static Document withChunkId(String fileId, DocumentInfo document, int index, Document chunk) {
+        String id = UUID.nameUUIDFromBytes((fileId + ":" + index).getBytes(StandardCharsets.UTF_8)).toString();
+        Map<String, Object> metadata = new HashMap<>(chunk.getMetadata());
+        metadata.put(METADATA_DOCUMENT_ID, document.documentId());
+        metadata.put(METADATA_COLLECTION, document.collection());
+        metadata.put(METADATA_JOB_ID, fileId);
+        metadata.put(METADATA_CHUNK_INDEX, index);
+        metadata.put(METADATA_CONTENT_HASH, TextFingerprint.sha256(chunk.getText()));
+        if (document.fileName() != null) {
+            metadata.put(METADATA_FILE_NAME, document.fileName());
+        }
+        return Document.builder().id(id).text(chunk.getText()).metadata(metadata).build();
+    }
+
+    private void enqueue(BlockingQueue<Document> pipeline, Document chunk, AtomicBoolean cancelled) {
+        try {
+            do {
+                if (cancelled.get()) {
+                    throw new CancellationException("Ingestion cancelled");
+                }
+            } while (!pipeline.offer(chunk, 100, TimeUnit.MILLISECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Ingestion interrupted");
         }
     }
 
     public JobStatus getStatus(String fileId) {
-        return processStatus.getOrDefault(fileId, new JobStatus("NOT_FOUND", 0));
+        return jobStore.find(fileId);
+    }
+
+    public BatchStatus getBatchStatus(String batchId) {
+        List<BatchFileStatus> files = jobStore.findBatch(batchId);
+        if (files.isEmpty()) {
+            return new BatchStatus(batchId, "NOT_FOUND", 0, 0, 0, null, files);
+        }
+
+        int completed = (int) files.stream().filter(file -> "COMPLETED".equals(file.status())).count();
+        int failed = (int) files.stream().filter(file -> "ERROR".equals(file.status())).count();
+        int progress = (int) files.stream().mapToInt(BatchFileStatus::progress).average().orElse(0);
+
+        String status;
+        if (completed + failed < files.size()) {
+            status = files.stream().allMatch(file -> "QUEUED".equals(file.status())) ? "QUEUED" : "PROCESSING";
+        } else {
+            status = failed > 0 ? "ERROR" : "COMPLETED";
+        }
+        return new BatchStatus(batchId, status, progress, completed, failed, null, files);
     }
 
     // Method to save documents to vector store
     public void saveDocument(String fileId, List<Document> documents) {
-        int batchSize = 1;
-        int total = documents.size();
+        log.debug("Starting embedding generation for {} chunks in batches of {}...", documents.size(), batchSize);
 
-        System.out.println("Starting embedding generation for " + total + " chunks...");
+        BatchWriter writer = new BatchWriter(fileId, 0);
+        for (int i = 0; i < documents.size(); i++) {
+            writer.add(documents.get(i));
+            writer.parsed((double) (i + 1) / documents.size());
+        }
+        writer.finish();
+    }
 
-        for (int i = 0; i < total; i += batchSize) {
-            int end = Math.min(i + batchSize, total);
-            List<Document> batch = documents.subList(i, end);
-            
-            vectorStore.add(batch);
+    // A file of a bulk upload, already in the upload spool
+    public record BatchFile(String jobId, DocumentInfo document, Resource resource) {}
 
-            // Progress calculation
-            // (Chunks processed / Total) * 100
-            int progress = (int) ((double) end / total * 100);
-            
-            // Update status
-            processStatus.put(fileId, new JobStatus("PROCESSING", progress));
-            
-            System.out.println("Job " + fileId + ": " + progress + "% completed.");
+    // Groups chunks into batches of batchSize and embeds/inserts them on the embedding executor,
+    // with at most maxConcurrentBatches batches in flight at once. add() blocks while all permits are taken.
+    // Chunks before firstChunk were committed by a previous run of the job.
+    private final class BatchWriter {
+
+        private final String fileId;
+
+        private final List<CompletableFuture<Void>> pending = new ArrayList<>();
+
+        // Finished batches past the committed watermark: first chunk -> end of the batch
+        private final Map<Integer, Integer> finishedBatches = new HashMap<>();
+
+        private int savedChunks;
+
+        private int committedChunks;
+
+        private int reportedProgress;
+
+        private List<Document> batch = new ArrayList<>();
+
+        private volatile int submitted;
+
+        private volatile double parsedFraction;
+
+        BatchWriter(String fileId, int firstChunk) {
+            this.fileId = fileId;
+            this.savedChunks = firstChunk;
+            this.committedChunks = firstChunk;
+            this.submitted = firstChunk;
+        }
+
+        void parsed(double fraction) {
+            this.parsedFraction = fraction;
+        }
+
+        void add(Document chunk) {
+            batch.add(chunk);
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void finish() {
+            flush();
+            parsedFraction = 1;
+            join(CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)));
+            reportFinished();
+        }
+
+        // Batches already submitted can't be interrupted halfway, waits for them whatever their outcome
+        void awaitSubmitted() {
+            awaitQuietly(CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)));
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            // Stop submitting new batches as soon as one of them has failed
+            pending.stream().filter(CompletableFuture::isCompletedExceptionally).findFirst().ifPresent(DocumentService::join);
+            pending.removeIf(future -> future.isDone() && !future.isCompletedExceptionally());
+
+            List<Document> toSave = batch;
+            batch = new ArrayList<>();
+            int start = submitted;
+            submitted += toSave.size();
+            pending.add(submitBatch(toSave, () -> report(start, start + toSave.size())));
+        }
+
+        // Batches finish out of order, on different threads. The watermark and the progress are computed and
+        // reported under one lock, so neither of them ever goes backwards for the job.
+        // A job can only resume after chunks that were all committed, so batches finishing out of order
+        // move the watermark once every batch before them has finished too.
+        private synchronized void report(int start, int end) {
+            savedChunks += end - start;
+            finishedBatches.put(start, end);
+            while (finishedBatches.containsKey(committedChunks)) {
+                committedChunks = finishedBatches.remove(committedChunks);
+            }
+            reportedProgress = Math.max(reportedProgress, progress());
+            updateProgress(fileId, reportedProgress, committedChunks);
+        }
+
+        // The last batch may have finished before parsing did
+        private synchronized void reportFinished() {
+            reportedProgress = 100;
+            updateProgress(fileId, reportedProgress, committedChunks);
+        }
+
+        // Progress calculation
+        // (Chunks processed / Chunks produced so far) * fraction of the document parsed * 100
+        // Once parsing has finished this is exactly (Chunks processed / Total) * 100
+        private int progress() {
+            return (int) ((double) savedChunks / submitted * parsedFraction * 100);
+        }
+    }
+
+    private CompletableFuture<Void> submitBatch(List<Document> batch, Runnable onSaved) {
+        try {
+            embeddingPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an embedding slot", e);
         }
+
+        try {
+            return CompletableFuture.runAsync(() -> {
+                // Embedded first and written in one transaction by the bulk writer, the same rows VectorStore.add would write
+                List<float[]> embeddings = stageMetrics.embed().record(
+                        () -> embeddingModel.embed(batch, EmbeddingOptions.builder().build(), batchingStrategy));
+                stageMetrics.store().record(() -> pgvectorLimiter.callWaiting(() -> {
+                    vectorWriter.write(batch, embeddings);
+                    return null;
+                }));
+                stageMetrics.chunks().increment(batch.size());
+                // Cached search results no longer reflect the corpus
+                corpusVersion.increment();
+                onSaved.run();
+            }, embeddingExecutor).whenComplete((result, error) -> embeddingPermits.release());
+        } catch (RuntimeException e) {
+            embeddingPermits.release();
+            throw e;
+        }
+    }
+
+    // Written to the job table in the next progress flush
+    private void updateProgress(String fileId, int progress, int committedChunks) {
+        jobStore.progress(fileId, progress, committedChunks);
+        log.debug("Job {}: {}% completed.", fileId, progress);
+    }
+
+    // Waits for the future and rethrows the original failure instead of the CompletionException wrapper
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Only waits, the failure (if any) has already been handled by whoever awaits it
+    private static void awaitQuietly(CompletableFuture<?> future) {
+        future.exceptionally(error -> null).join();
     }
 
     public List<Document> similaritySearch(String question) {
-        System.out.println("Searching similarities for: " + question);
-        
-        SearchRequest searchRequest = SearchRequest.builder()
-            .query(question)
-            .topK(8) 
-            .similarityThreshold(0.45)
-            .build();
+        return similaritySearch(question, null);
+    }
 
-        List<Document> docs = vectorStore.similaritySearch(searchRequest);
+    // filter restricts the search to the chunks whose metadata matches it (null searches every document)
+    public List<Document> similaritySearch(String question, Filter.Expression filter) {
+        return similaritySearch(question, filter, null);
+    }
+
+    // profile is the name of a retrieval profile (null for the default one), see RetrievalProfiles
+    public List<Document> similaritySearch(String question, Filter.Expression filter, String profileName) {
+        return stageMetrics.retrieval().record(() -> search(question, filter, profileName));
+    }
+
+    private List<Document> search(String question, Filter.Expression filter, String profileName) {
+        RetrievalProfile profile = retrievalProfiles.resolve(profileName);
+        String cacheKey = TextFingerprint.normalize(question) + "|" + profile.name() + (filter == null ? "" : "|" + filter);
+        long version = corpusVersion.current();
+        List<Document> cached = retrievalCache.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        log.debug("Searching similarities for: {} ({}, {})", question, retrievalStrategy, profile.name());
+
+        boolean hybrid = "hybrid".equalsIgnoreCase(retrievalStrategy);
+        Timer timer = meterRegistry.timer("documind.retrieval", "strategy", hybrid ? "hybrid" : "vector", "profile", profile.name());
+        int candidates = rerankEnabled ? Math.max(TOP_K, profile.candidates()) : TOP_K;
+        List<Document> retrieved = timer.record(() -> hybrid
+                ? hybridSearch(question, filter, candidates, profile)
+                : vectorSearch(question, filter, candidates, profile));
+        List<Document> docs = rerankEnabled ? reranker.rerank(question, retrieved, TOP_K) : retrieved;
         
-        System.out.println("--- CHUNKS FOUND (" + docs.size() + ") ---");
-        docs.forEach(d -> {
-            System.out.println("Score: " + d.getMetadata().get("distance")); 
-            String preview = d.getText().length() > 100 ? d.getText().substring(0, 100) : d.getText();
-            System.out.println("Content: " + preview.replace("\n", " ") + "...");
-        });
-        System.out.println("----------------------------------------------");
+        if (log.isDebugEnabled()) {
+            log.debug("Chunks found: {}", docs.size());
+            docs.forEach(d -> {
+                String preview = d.getText().length() > 100 ? d.getText().substring(0, 100) : d.getText();
+                log.debug("Score: {} Content: {}...", hybrid ? d.getScore() : d.getMetadata().get("distance"), preview.replace("\n", " "));
+            });
+        }
+
+        retrievalCache.put(cacheKey, docs, version);
 
         return docs;
     }
 
+    // The profile sets the HNSW search list and the similarity threshold. An exact profile skips the index when
+    // the question is scoped to few enough chunks. With a reduced-precision storage mode the index shortlist is
+    // rescored with the stored float vectors, see VectorSearchRepository.
+    private List<Document> vectorSearch(String question, Filter.Expression filter, int topK, RetrievalProfile profile) {
+        float[] queryEmbedding = embeddingModel.embed(question);
+
+        return pgvectorLimiter.call(() -> {
+            boolean exact = profile.exactMaxRows() > 0 && filter != null && vectorSearchRepository.count(filter) <= profile.exactMaxRows();
+            return vectorSearchRepository.search(queryEmbedding, filter, topK, profile.efSearch(), exact);
+        }).stream()
+                .filter(doc -> doc.getScore() >= profile.threshold())
+                .toList();
+    }
+
+    // The lexical query runs on the retrieval executor while this thread runs the vector query.
+    // Each side returns hybridCandidates chunks (or limit, if higher) and reciprocal rank fusion keeps the best limit,
+    // so exact terms the embedding misses (part numbers, clause ids, names) still reach the prompt.
+    private List<Document> hybridSearch(String question, Filter.Expression filter, int limit, RetrievalProfile profile) {
+        int perSide = Math.max(hybridCandidates, limit);
+        CompletableFuture<List<Document>> lexical = CompletableFuture.supplyAsync(
+            () -> pgvectorLimiter.call(() -> vectorStoreRepository.lexicalSearch(question, filter, perSide)), retrievalExecutor);
+
+        List<Document> vector = vectorSearch(question, filter, perSide, profile);
+
+        return ReciprocalRankFusion.fuse(rrfK, limit, vector, join(lexical));
+    }
+
+    // Answers from the semantic answer cache when a close enough question was already answered over the same
+    // chunks, otherwise prompts the model and caches its answer (including "no information found").
+    // The question embedding is normally served from memory, the similarity search has just computed it.
+    public ChatResponse cachedPromptModel(List<Document> similarDocuments, String question) {
+        AnswerLookup lookup = lookupAnswer(similarDocuments, question);
+        if (lookup.cached() != null) {
+            return new ChatResponse(lookup.cached().answer(), true);
+        }
+
+        ContextBuilder.BuiltContext context = buildContext(similarDocuments);
+        String answer = cleanAnswer(stageMetrics.model().record(() -> buildPrompt(context, question).call().content()));
+        store(lookup, answer);
+        return new ChatResponse(answer, false, context.tokensSaved());
+    }
+
+    // Streaming version of cachedPromptModel: answer tokens are emitted as the model generates them, followed by
+    // a terminal "done" or "not-found" event. Nothing is sent while the output could still be the
+    // [[NO_INFO_FOUND]] marker, so clients never display it.
+    // The model slot is taken before the stream is returned, so a busy model fails with a 503 before any event is
+    // sent, and it is released when the model output ends.
+    public Flux<ChatStreamEvent> streamCachedPromptModel(List<Document> similarDocuments, String question) {
+        AnswerLookup lookup = lookupAnswer(similarDocuments, question);
+        if (lookup.cached() != null) {
+            String answer = lookup.cached().answer();
+            return answer == null
+                    ? Flux.just(ChatStreamEvent.notFound(true))
+                    : Flux.just(ChatStreamEvent.token(answer), ChatStreamEvent.done(true, 0));
+        }
+
+        ContextBuilder.BuiltContext context = buildContext(similarDocuments);
+        NoInfoFilter filter = new NoInfoFilter();
+        ConcurrencyLimiter.Slot slot = ollamaLimiter.acquireSlot();
+        Flux<String> tokens = Flux.using(() -> slot,
+                held -> buildPrompt(context, question).advisors(a -> a.param(ConcurrencyLimitAdvisor.SLOT, held)).stream().content(),
+                ConcurrencyLimiter.Slot::close);
+        return timeStream(tokens)
+                .concatMap(token -> Mono.justOrEmpty(filter.accept(token)).map(ChatStreamEvent::token))
+                .concatWith(Flux.defer(() -> {
+                    String answer = cleanAnswer(filter.fullText());
+                    store(lookup, answer);
+                    if (answer == null) {
+                        return Flux.just(ChatStreamEvent.notFound(false));
+                    }
+                    return Mono.justOrEmpty(filter.remaining()).map(ChatStreamEvent::token)
+                            .concatWith(Mono.just(ChatStreamEvent.done(false, context.tokensSaved())));
+                }));
+    }
+
+    private AnswerLookup lookupAnswer(List<Document> similarDocuments, String question) {
+        if (!answerCacheEnabled) {
+            return new AnswerLookup(null, null, 0, null);
+        }
+
+        return stageMetrics.answerCache().record(() -> {
+            long version = corpusVersion.current();
+            float[] questionEmbedding = embeddingModel.embed(question);
+            String contextKey = AnswerCache.contextKey(similarDocuments);
+            return new AnswerLookup(questionEmbedding, contextKey, version, answerCache.find(questionEmbedding, contextKey));
+        });
+    }
+
+    // Records the model stage of a streamed answer, and how long the first token took
+    private Flux<String> timeStream(Flux<String> tokens) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicBoolean firstToken = new AtomicBoolean(true);
+            return tokens
+                    .doOnNext(token -> {
+                        if (firstToken.getAndSet(false)) {
+                            stageMetrics.firstToken().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        }
+                    })
+                    .doOnComplete(() -> stageMetrics.model().record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    private record AnswerLookup(float[] questionEmbedding, String contextKey, long version, AnswerCache.CachedAnswer cached) {}
+
+    private void store(AnswerLookup lookup, String answer) {
+        if (lookup.questionEmbedding() != null) {
+            answerCache.put(lookup.questionEmbedding(), lookup.contextKey(), answer, lookup.version());
+        }
+    }
+
     public String promptModel(List<Document> similarDocuments, String question) {
-        // Building context from similar documents, separated by tags
-        String context = similarDocuments.stream()
-                .map(doc -> "<fragment>" + System.lineSeparator() + doc.getText() + System.lineSeparator() + "</fragment>")
-                .collect(Collectors.joining(System.lineSeparator()));
+        // Prompting the chat model
+        ContextBuilder.BuiltContext context = buildContext(similarDocuments);
+        String response = stageMetrics.model().record(() -> buildPrompt(context, question)
+                .call()
+                .content());
+
+        return cleanAnswer(response);
+    }
+
+    // Building context from similar documents, separated by tags, within the token budget
+    private ContextBuilder.BuiltContext buildContext(List<Document> similarDocuments) {
+        ContextBuilder.BuiltContext context = stageMetrics.context().record(() -> contextBuilder.build(similarDocuments));
+        log.debug("Context: {} tokens ({} saved from {} chunks).", context.tokens(), context.tokensSaved(), similarDocuments.size());
+        return context;
+    }
+
+    private ChatClient.ChatClientRequestSpec buildPrompt(ContextBuilder.BuiltContext builtContext, String question) {
+        String context = builtContext.text();
 
         // System prompt with rules for the AI model
         String systemText = """
@@ -170,34 +824,90 @@ public class DocumentService {
             4.  NEVER invent data. NEVER give hypothetical examples. NEVER ask follow-up questions.
             5.  LANGUAGE: Answer in the same language as the USER QUESTION.
             """;
-        // Prompting the chat model
-        String response = chatClient.prompt()
+
+        return chatClient.prompt()
                 .system(s -> s.text(systemText).param("context_str", context))
-                .user(question)
-                .call()
-                .content();
+                .user(question);
+    }
 
+    // null when the model gave no answer or found no information
+    private static String cleanAnswer(String response) {
         if (response == null || response.isBlank()) {
             return null;
         }
 
-        
         String cleanResponse = response.trim();
         
-        if (cleanResponse.contains("[[NO_INFO_FOUND]]")) {
+        if (cleanResponse.contains(NO_INFO_MARKER)) {
             return null;
         }
 
         return cleanResponse;
     }
 
+    // Holds back streamed tokens while the output so far could still be the [[NO_INFO_FOUND]] marker
+    private static final class NoInfoFilter {
+
+        private final StringBuilder fullText = new StringBuilder();
+
+        private final StringBuilder held = new StringBuilder();
+
+        private boolean released;
+
+        // Text that can be sent to the client now, or null
+        String accept(String token) {
+            fullText.append(token);
+            if (released) {
+                return token;
+            }
+
+            held.append(token);
+            String candidate = held.toString().stripLeading();
+            if (NO_INFO_MARKER.startsWith(candidate) || candidate.startsWith(NO_INFO_MARKER)) {
+                return null;
+            }
+
+            released = true;
+            String text = held.toString();
+            held.setLength(0);
+            return text;
+        }
+
+        // Text still held back when the stream ends
+        String remaining() {
+            return held.isEmpty() ? null : held.toString();
+        }
+
+        String fullText() {
+            return fullText.toString();
+        }
+    }
+
+    // Number of chunks deleted, 0 if the document doesn't exist
+    public int deleteDocument(String documentId) {
+        int deleted = pgvectorLimiter.call(() -> vectorStoreRepository.deleteDocument(documentId));
+        if (deleted > 0) {
+            corpusVersion.increment();
+            log.info("Deleted document {} ({} chunks).", documentId, deleted);
+        }
+        return deleted;
+    }
+
+    // collection is optional
+    public List<DocumentSummary> listDocuments(String collection) {
+        return pgvectorLimiter.call(() -> vectorStoreRepository.findDocuments(collection));
+    }
+
     @Transactional 
     public void clearVectorStore() {
         jdbcTemplate.execute("TRUNCATE TABLE vector_store");
+        corpusVersion.increment();
+        retrievalCache.clear();
+        answerCache.clear();
             
-        // Clear the in-memory status map
-        processStatus.clear();
+        // Forget the finished jobs, the ones still running keep their status
+        jobStore.deleteFinished();
             
-        System.out.println(">>> SUCCESS: Vector database truncated.");
+        log.info("Vector database truncated.");
     }
 }
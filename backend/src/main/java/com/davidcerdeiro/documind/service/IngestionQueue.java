@@ -0,0 +1,189 @@
+package com.davidcerdeiro.documind.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.davidcerdeiro.documind.exception.QueueFullException;
+
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Bounded queue of ingestion jobs, run by a fixed number of workers.
+// Jobs are served round-robin across uploaders: every job gets the round after its uploader's previous job
+// (and never a round already served), and workers take the lowest round first, oldest first within a round.
+// A client that uploads twenty files therefore doesn't make everybody else wait for all of them.
+// When capacity jobs are already waiting, new uploads are rejected instead of piling up. Uploads reserve their
+// place before they are spooled, so a full queue rejects them without reading the whole body first.
+@Component
+public class IngestionQueue {
+
+    private static final ContextSnapshotFactory CONTEXT = ContextSnapshotFactory.builder().build();
+
+    private final Executor executor;
+
+    private final int workers;
+
+    private final int capacity;
+
+    private final Duration retryAfter;
+
+    private final PriorityQueue<QueuedJob> waiting = new PriorityQueue<>(
+            Comparator.comparingLong(QueuedJob::round).thenComparingLong(QueuedJob::sequence));
+
+    // Round of the last job queued by each uploader that still matters for scheduling
+    private final Map<String, Long> lastRound = new HashMap<>();
+
+    // Round of the last job handed to a worker
+    private long currentRound;
+
+    private long sequence;
+
+    private int running;
+
+    // Places held by uploads still being spooled, they count towards capacity
+    private int reserved;
+
+    public IngestionQueue(@Qualifier("ingestionExecutor") Executor executor, MeterRegistry meterRegistry,
+            @Value("${app.ingestion.workers:2}") int workers,
+            @Value("${app.ingestion.queue-capacity:20}") int capacity,
+            @Value("${app.ingestion.retry-after:30s}") Duration retryAfter) {
+        this.executor = executor;
+        this.workers = Math.max(1, workers);
+        this.capacity = capacity;
+        this.retryAfter = retryAfter;
+
+        Gauge.builder("documind.ingestion.queued", this, IngestionQueue::queued)
+                .description("Ingestion jobs waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("documind.ingestion.running", this, IngestionQueue::running)
+                .description("Ingestion jobs being processed")
+                .register(meterRegistry);
+    }
+
+    // Holds a place in the queue, or throws QueueFullException if capacity jobs are already waiting or reserved.
+    // The place is taken by submit, or given back when the reservation is closed without being submitted.
+    public synchronized Reservation reserve() {
+        checkCapacity();
+        reserved++;
+        return new Reservation();
+    }
+
+    // Queues the job in the place held by the reservation
+    public synchronized void submit(Reservation reservation, String jobId, String uploader, Runnable job) {
+        if (!reservation.held) {
+            throw new IllegalStateException("The reservation was already used or released");
+        }
+        reservation.held = false;
+        reserved--;
+        enqueue(jobId, uploader, job);
+    }
+
+    // Queues the job, or throws QueueFullException if capacity jobs are already waiting or reserved
+    public synchronized void submit(String jobId, String uploader, Runnable job) {
+        checkCapacity();
+        enqueue(jobId, uploader, job);
+    }
+
+    private void checkCapacity() {
+        if (waiting.size() + reserved >= capacity) {
+            throw new QueueFullException("The ingestion queue is full (" + capacity + " documents waiting)", Math.max(1, retryAfter.toSeconds()));
+        }
+    }
+
+    // Must hold the lock
+    private void enqueue(String jobId, String uploader, Runnable job) {
+        Long previous = lastRound.get(uploader);
+        long round = previous == null ? currentRound : Math.max(currentRound, previous + 1);
+        lastRound.put(uploader, round);
+        // The job runs with the context of the request that queued it (trace id included), on whichever
+        // thread ends up starting it
+        waiting.add(new QueuedJob(jobId, uploader, round, sequence++, CONTEXT.captureAll().wrap(job)));
+        dispatch();
+    }
+
+    // 1-based position of a waiting job in the order the workers will pick it up, or 0 if it isn't waiting
+    public synchronized int position(String jobId) {
+        List<QueuedJob> order = new ArrayList<>(waiting);
+        order.sort(waiting.comparator());
+        for (int i = 0; i < order.size(); i++) {
+            if (order.get(i).jobId().equals(jobId)) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    public synchronized int queued() {
+        return waiting.size();
+    }
+
+    public synchronized int running() {
+        return running;
+    }
+
+    // Starts waiting jobs while there are free workers. Must hold the lock.
+    private void dispatch() {
+        while (running < workers && !waiting.isEmpty()) {
+            QueuedJob next = takeNext();
+            running++;
+            try {
+                executor.execute(() -> {
+                    try {
+                        next.job().run();
+                    } finally {
+                        finished();
+                    }
+                });
+            } catch (RuntimeException e) {
+                running--;
+                throw e;
+            }
+        }
+    }
+
+    private synchronized void finished() {
+        running--;
+        dispatch();
+    }
+
+    private QueuedJob takeNext() {
+        QueuedJob next = waiting.poll();
+        currentRound = next.round();
+        // Uploaders whose last job is behind the current round get the current round anyway
+        lastRound.values().removeIf(round -> round < currentRound);
+        return next;
+    }
+
+    public final class Reservation implements AutoCloseable {
+
+        // Guarded by the queue's lock
+        private boolean held = true;
+
+        private Reservation() {
+        }
+
+        // Gives the place back unless the job was submitted
+        @Override
+        public void close() {
+            synchronized (IngestionQueue.this) {
+                if (held) {
+                    held = false;
+                    reserved--;
+                }
+            }
+        }
+    }
+
+    private record QueuedJob(String jobId, String uploader, long round, long sequence, Runnable job) {}
+}
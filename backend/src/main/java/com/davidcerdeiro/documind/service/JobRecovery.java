@@ -0,0 +1,72 @@
+package com.davidcerdeiro.documind.service;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.davidcerdeiro.documind.exception.QueueFullException;
+import com.davidcerdeiro.documind.repository.JobRepository.StoredJob;
+
+// Picks up the jobs left unfinished by an instance that crashed or was restarted, including this one,
+// and queues them again. processFile carries on after the chunks the job had already committed.
+// The spool should be shared by every replica (a ReadWriteMany volume in Kubernetes). When it isn't, the upload of a
+// job is only on the host that received it: other replicas leave such a job alone for missing-file-timeout, so that
+// host can resume it when it comes back, and only then fail it.
+@Component
+public class JobRecovery {
+
+    private static final Logger log = LoggerFactory.getLogger(JobRecovery.class);
+
+    private final JobStore jobStore;
+
+    private final IngestionQueue ingestionQueue;
+
+    private final DocumentService documentService;
+
+    private final Duration missingFileTimeout;
+
+    public JobRecovery(JobStore jobStore, IngestionQueue ingestionQueue, DocumentService documentService,
+            @Value("${app.ingestion.missing-file-timeout:1h}") Duration missingFileTimeout) {
+        this.jobStore = jobStore;
+        this.ingestionQueue = ingestionQueue;
+        this.documentService = documentService;
+        this.missingFileTimeout = missingFileTimeout;
+    }
+
+    @Scheduled(initialDelayString = "${app.ingestion.recovery-interval:1m}", fixedDelayString = "${app.ingestion.recovery-interval:1m}")
+    void resumeInterruptedJobs() {
+        for (StoredJob job : jobStore.claimStaleJobs()) {
+            File file = job.filePath() != null ? new File(job.filePath()) : null;
+            if (file == null || !file.exists()) {
+                if (spooledElsewhere(job)) {
+                    jobStore.skip(job.jobId());
+                    log.debug("Job {} is spooled on {}, leaving it to that instance.", job.jobId(), job.spoolHost());
+                    continue;
+                }
+                jobStore.failed(job.jobId(), "The uploaded file is no longer available, please upload it again.");
+                continue;
+            }
+
+            try {
+                ingestionQueue.submit(job.jobId(), job.uploader(), () -> documentService.processFile(job.jobId(), job.document(), new FileSystemResource(file)));
+                log.info("Resuming job {} after chunk {}.", job.jobId(), job.committedChunks());
+            } catch (QueueFullException e) {
+                // Tried again on the next round
+                jobStore.release(job.jobId());
+            }
+        }
+    }
+
+    // The file may still be on the host that received the upload, if that host can still come back for it
+    private boolean spooledElsewhere(StoredJob job) {
+        return job.spoolHost() != null && !job.spoolHost().equals(jobStore.spoolHost())
+                && job.createdAt().isAfter(Instant.now().minus(missingFileTimeout));
+    }
+}
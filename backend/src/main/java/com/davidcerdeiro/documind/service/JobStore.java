@@ -0,0 +1,187 @@
+package com.davidcerdeiro.documind.service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.davidcerdeiro.documind.dto.BatchFileStatus;
+import com.davidcerdeiro.documind.dto.DocumentInfo;
+import com.davidcerdeiro.documind.dto.JobStatus;
+import com.davidcerdeiro.documind.exception.DocumentBusyException;
+import com.davidcerdeiro.documind.repository.JobRepository;
+import com.davidcerdeiro.documind.repository.JobRepository.ProgressUpdate;
+import com.davidcerdeiro.documind.repository.JobRepository.StoredJob;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Status of the ingestion jobs, persisted in the ingestion_job table so every replica can answer for any job
+// and jobs survive a restart. State changes are written straight away; progress changes with every batch,
+// so it is kept in memory and written for all running jobs at once every flush interval.
+@Component
+public class JobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(JobStore.class);
+
+    // Identifies this instance as the owner of the jobs it runs
+    private final String instanceId = UUID.randomUUID().toString();
+
+    // Host whose spool holds the uploads of this instance (the pod name in Kubernetes). Survives a restart,
+    // unlike instanceId, so the instance can tell its own spooled files from those of other replicas.
+    private final String spoolHost = hostName();
+
+    private final JobRepository jobRepository;
+
+    private final Map<String, ProgressUpdate> pendingProgress = new ConcurrentHashMap<>();
+
+    private final Duration ttl;
+
+    private final Duration staleAfter;
+
+    public JobStore(JobRepository jobRepository, MeterRegistry meterRegistry,
+            @Value("${app.ingestion.job-ttl:24h}") Duration ttl,
+            @Value("${app.ingestion.stale-after:2m}") Duration staleAfter) {
+        this.jobRepository = jobRepository;
+        this.ttl = ttl;
+        this.staleAfter = staleAfter;
+
+        Gauge.builder("documind.ingestion.progress.pending", pendingProgress, Map::size)
+                .description("Running jobs whose progress is waiting for the next flush to the job table")
+                .register(meterRegistry);
+    }
+
+    // A document is replaced by one job at a time, on any replica: a second upload while the first one
+    // is queued or running fails with a 409 instead of racing it
+    public void create(String jobId, DocumentInfo document, String uploader, Path file, String batchId) {
+        try {
+            jobRepository.insert(jobId, document, file.toString(), spoolHost, uploader, instanceId, batchId);
+        } catch (DuplicateKeyException e) {
+            throw new DocumentBusyException("The document " + document.documentId() + " already has an upload in progress, try again when it finishes.");
+        }
+    }
+
+    public void delete(String jobId) {
+        pendingProgress.remove(jobId);
+        jobRepository.delete(jobId);
+    }
+
+    public void started(String jobId) {
+        jobRepository.markProcessing(jobId);
+    }
+
+    // Batches finish out of order, so never let a slower batch move the progress backwards
+    public void progress(String jobId, int progress, int committedChunks) {
+        pendingProgress.merge(jobId, new ProgressUpdate(jobId, progress, committedChunks), (current, update) ->
+                new ProgressUpdate(jobId, Math.max(current.progress(), progress), Math.max(current.committedChunks(), committedChunks)));
+    }
+
+    public void completed(String jobId) {
+        pendingProgress.remove(jobId);
+        jobRepository.updateStatus(jobId, "COMPLETED", 100, null);
+    }
+
+    public void failed(String jobId, String message) {
+        pendingProgress.remove(jobId);
+        jobRepository.updateStatus(jobId, "ERROR", 0, message);
+    }
+
+    // Progress not flushed yet is taken from memory when this instance runs the job
+    public JobStatus find(String jobId) {
+        return jobRepository.find(jobId)
+                .map(job -> {
+                    ProgressUpdate pending = pendingProgress.get(jobId);
+                    int progress = pending != null ? Math.max(pending.progress(), job.progress()) : job.progress();
+                    return new JobStatus(job.status(), progress, job.message());
+                })
+                .orElse(new JobStatus("NOT_FOUND", 0));
+    }
+
+    // Status of every job of the batch, empty if the batch doesn't exist
+    public List<BatchFileStatus> findBatch(String batchId) {
+        return jobRepository.findBatch(batchId).stream()
+                .map(job -> {
+                    ProgressUpdate pending = pendingProgress.get(job.jobId());
+                    int progress = pending != null ? Math.max(pending.progress(), job.progress()) : job.progress();
+                    return new BatchFileStatus(job.jobId(), job.document().documentId(), job.document().fileName(), job.status(), progress, job.message());
+                })
+                .toList();
+    }
+
+    // Chunks of the job already in the vector store, counted from the first one without gaps
+    public int committedChunks(String jobId) {
+        return jobRepository.find(jobId).map(StoredJob::committedChunks).orElse(0);
+    }
+
+    public List<StoredJob> claimStaleJobs() {
+        return jobRepository.claimStale(instanceId, staleAfter);
+    }
+
+    public void release(String jobId) {
+        jobRepository.release(jobId);
+    }
+
+    public void skip(String jobId) {
+        jobRepository.skip(jobId);
+    }
+
+    public String spoolHost() {
+        return spoolHost;
+    }
+
+    public void deleteFinished() {
+        jobRepository.deleteFinished();
+    }
+
+    public Set<Path> unfinishedJobFiles() {
+        return jobRepository.unfinishedFilePaths().stream().map(Path::of).collect(Collectors.toSet());
+    }
+
+    private static String hostName() {
+        String hostName = System.getenv("HOSTNAME");
+        if (hostName != null && !hostName.isBlank()) {
+            return hostName;
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.ingestion.progress-flush-interval:2s}")
+    void flushProgress() {
+        List<ProgressUpdate> updates = new ArrayList<>(pendingProgress.values());
+        jobRepository.updateProgress(updates);
+        // An update that arrived during the write stays pending for the next flush
+        updates.forEach(update -> pendingProgress.remove(update.jobId(), update));
+    }
+
+    // Tells the other instances that the jobs of this one are still alive
+    @Scheduled(fixedDelayString = "${app.ingestion.heartbeat-interval:30s}")
+    void heartbeat() {
+        jobRepository.heartbeat(instanceId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.ingestion.cleanup-interval:1h}")
+    void deleteExpiredJobs() {
+        int deleted = jobRepository.deleteFinishedBefore(ttl);
+        if (deleted > 0) {
+            log.info("Deleted {} finished jobs older than {}.", deleted, ttl);
+        }
+    }
+}
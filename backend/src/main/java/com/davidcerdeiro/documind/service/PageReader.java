@@ -0,0 +1,15 @@
+package com.davidcerdeiro.documind.service;
+
+import java.util.function.Consumer;
+
+import org.springframework.ai.document.Document;
+
+// Hands a document over page by page, see PageStreamingReader (Tika) and ParallelPdfReader (PDFBox)
+public interface PageReader {
+
+    // Calls the consumer on the calling thread once per non-blank page, in page order
+    void read(Consumer<Document> pageConsumer);
+
+    // Total number of pages, or 0 while it is still unknown
+    int getTotalPages();
+}
@@ -0,0 +1,143 @@
+package com.davidcerdeiro.documind.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.PagedText;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.reader.ExtractedTextFormatter;
+import org.springframework.ai.reader.tika.TikaDocumentReader;
+import org.springframework.core.io.Resource;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+// Reads a document with Tika and hands it over page by page, as soon as each page is parsed.
+// TikaDocumentReader buffers the whole text and returns a single Document; this reader listens to the
+// <div class="page"> events Tika emits for paged formats (PDF) instead.
+// Formats without pages are emitted as a single page when the body ends.
+public class PageStreamingReader implements PageReader {
+
+    public static final String METADATA_PAGE_NUMBER = "page_number";
+
+    private final AutoDetectParser parser = new AutoDetectParser();
+
+    private final ExtractedTextFormatter textFormatter = ExtractedTextFormatter.defaults();
+
+    private final Resource resource;
+
+    private final Metadata metadata = new Metadata();
+
+    public PageStreamingReader(Resource resource) {
+        this.resource = resource;
+    }
+
+    // Parses the resource on the calling thread, calling the consumer once per non-blank page, in page order
+    @Override
+    public void read(Consumer<Document> pageConsumer) {
+        try (InputStream stream = resource.getInputStream()) {
+            parser.parse(stream, new PageHandler(pageConsumer), metadata, new ParseContext());
+        } catch (IOException | SAXException | TikaException e) {
+            throw new RuntimeException("Error reading document " + resourceName(), e);
+        }
+    }
+
+    // Total number of pages reported by the parser, or 0 while it is still unknown.
+    // For PDFs Tika sets it before the first page is emitted.
+    @Override
+    public int getTotalPages() {
+        Integer pages = metadata.getInt(PagedText.N_PAGES);
+        return pages != null ? pages : 0;
+    }
+
+    private String resourceName() {
+        String filename = resource.getFilename();
+        return filename != null ? filename : resource.getDescription();
+    }
+
+    private final class PageHandler extends DefaultHandler {
+
+        private final Consumer<Document> pageConsumer;
+
+        private final StringBuilder pageText = new StringBuilder();
+
+        private boolean inBody;
+
+        private int divDepth;
+
+        // Depth of the <div class="page"> currently open, or -1 outside of a page
+        private int pageDepth = -1;
+
+        private int pageNumber;
+
+        PageHandler(Consumer<Document> pageConsumer) {
+            this.pageConsumer = pageConsumer;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            String name = elementName(localName, qName);
+            if ("body".equals(name)) {
+                inBody = true;
+            } else if ("div".equals(name)) {
+                divDepth++;
+                if (pageDepth < 0 && "page".equals(attributes.getValue("class"))) {
+                    pageDepth = divDepth;
+                }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            String name = elementName(localName, qName);
+            if ("div".equals(name)) {
+                if (divDepth == pageDepth) {
+                    emitPage(++pageNumber);
+                    pageDepth = -1;
+                }
+                divDepth--;
+            } else if ("body".equals(name)) {
+                // Text outside of any page (non paged formats, trailing annotations) goes with the last page
+                emitPage(Math.max(pageNumber, 1));
+                inBody = false;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inBody) {
+                pageText.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) {
+            characters(ch, start, length);
+        }
+
+        private void emitPage(int number) {
+            String text = textFormatter.format(pageText.toString(), number);
+            pageText.setLength(0);
+
+            if (text.isBlank()) {
+                return;
+            }
+
+            Map<String, Object> pageMetadata = new HashMap<>();
+            pageMetadata.put(TikaDocumentReader.METADATA_SOURCE, resourceName());
+            pageMetadata.put(METADATA_PAGE_NUMBER, number);
+            pageConsumer.accept(new Document(text, pageMetadata));
+        }
+
+        private String elementName(String localName, String qName) {
+            return localName != null && !localName.isEmpty() ? localName : qName;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.davidcerdeiro.documind.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.reader.ExtractedTextFormatter;
+import org.springframework.ai.reader.tika.TikaDocumentReader;
+import org.springframework.core.io.Resource;
+
+// Reads a PDF with PDFBox, extracting ranges of pagesPerRange pages side by side on a fork-join pool, and hands
+// the pages over in page order on the calling thread, with the same text formatting and metadata as
+// PageStreamingReader. A PDDocument isn't thread-safe, so every range opens its own over the same file (or bytes
+// when the resource isn't a file); PDFBox only parses the objects of the pages it extracts.
+// At most twice the pool parallelism ranges are extracted or waiting to be consumed at once, so a slow consumer
+// doesn't make the text of the whole document pile up in memory.
+public class ParallelPdfReader implements PageReader {
+
+    private static final byte[] PDF_HEADER = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+
+    // The header may be preceded by garbage, which PDFBox skips too
+    private static final int HEADER_SEARCH_LIMIT = 1024;
+
+    private final ExtractedTextFormatter textFormatter = ExtractedTextFormatter.defaults();
+
+    private final Resource resource;
+
+    private final ForkJoinPool pool;
+
+    private final int pagesPerRange;
+
+    // Bytes of the document when it isn't a file, read once for every range
+    private byte[] content;
+
+    private volatile int totalPages;
+
+    public ParallelPdfReader(Resource resource, ForkJoinPool pool, int pagesPerRange) {
+        this.resource = resource;
+        this.pool = pool;
+        this.pagesPerRange = Math.max(1, pagesPerRange);
+    }
+
+    // True if the resource starts like a PDF. Anything else goes through Tika.
+    public static boolean isPdf(Resource resource) {
+        try (InputStream stream = resource.getInputStream()) {
+            byte[] head = stream.readNBytes(HEADER_SEARCH_LIMIT);
+            for (int i = 0; i + PDF_HEADER.length <= head.length; i++) {
+                if (Arrays.equals(head, i, i + PDF_HEADER.length, PDF_HEADER, 0, PDF_HEADER.length)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void read(Consumer<Document> pageConsumer) {
+        Deque<ForkJoinTask<List<Document>>> inFlight = new ArrayDeque<>();
+        try {
+            if (!resource.isFile()) {
+                try (InputStream stream = resource.getInputStream()) {
+                    content = stream.readAllBytes();
+                }
+            }
+            try (PDDocument document = Loader.loadPDF(open())) {
+                totalPages = document.getNumberOfPages();
+            }
+
+            int window = Math.max(1, pool.getParallelism() * 2);
+            int nextPage = 1;
+            while (nextPage <= totalPages || !inFlight.isEmpty()) {
+                while (nextPage <= totalPages && inFlight.size() < window) {
+                    int first = nextPage;
+                    int last = Math.min(totalPages, first + pagesPerRange - 1);
+                    inFlight.add(pool.submit(() -> extract(first, last)));
+                    nextPage = last + 1;
+                }
+                // join() rethrows the failure of the range
+                inFlight.poll().join().forEach(pageConsumer);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new RuntimeException("Error reading document " + resourceName(), e);
+        } finally {
+            // Left over when the consumer failed (the job was cancelled) or a range couldn't be read
+            inFlight.forEach(task -> task.cancel(false));
+            content = null;
+        }
+    }
+
+    @Override
+    public int getTotalPages() {
+        return totalPages;
+    }
+
+    private RandomAccessRead open() throws IOException {
+        return content != null ? new RandomAccessReadBuffer(content) : new RandomAccessReadBufferedFile(resource.getFile());
+    }
+
+    // Pages first..last (1-based, inclusive), the blank ones left out
+    private List<Document> extract(int first, int last) {
+        try (PDDocument document = Loader.loadPDF(open())) {
+            RangeStripper stripper = new RangeStripper();
+            stripper.setStartPage(first);
+            stripper.setEndPage(last);
+            stripper.writeText(document, stripper.pageText);
+            return stripper.pages;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String resourceName() {
+        String filename = resource.getFilename();
+        return filename != null ? filename : resource.getDescription();
+    }
+
+    // Extracts the whole range in one pass and cuts it into pages, instead of one getText call per page
+    // that would walk the page tree again every time
+    private final class RangeStripper extends PDFTextStripper {
+
+        private final StringWriter pageText = new StringWriter();
+
+        private final List<Document> pages = new ArrayList<>();
+
+        @Override
+        protected void startPage(PDPage page) throws IOException {
+            super.startPage(page);
+            pageText.getBuffer().setLength(0);
+        }
+
+        @Override
+        protected void endPage(PDPage page) throws IOException {
+            super.endPage(page);
+            int number = getCurrentPageNo();
+            String text = textFormatter.format(pageText.toString(), number);
+            if (text.isBlank()) {
+                return;
+            }
+
+            Map<String, Object> pageMetadata = new HashMap<>();
+            pageMetadata.put(TikaDocumentReader.METADATA_SOURCE, resourceName());
+            pageMetadata.put(PageStreamingReader.METADATA_PAGE_NUMBER, number);
+            pages.add(new Document(text, pageMetadata));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.davidcerdeiro.documind.service;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.ai.document.Document;
+
+// Reciprocal rank fusion: merges ranked lists whose scores aren't comparable (cosine distance, ts_rank)
+// using only the positions. A document scores sum(1 / (k + rank)) over the lists it appears in.
+// k dampens the weight of the first positions, 60 is the value from the original paper.
+public final class ReciprocalRankFusion {
+
+    private ReciprocalRankFusion() {
+    }
+
+    // Documents are matched by id; the first list a document appears in provides its text and metadata
+    @SafeVarargs
+    public static List<Document> fuse(int k, int limit, List<Document>... rankings) {
+        Map<String, Document> documents = new LinkedHashMap<>();
+        Map<String, Double> scores = new LinkedHashMap<>();
+
+        for (List<Document> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                Document document = ranking.get(rank);
+                documents.putIfAbsent(document.getId(), document);
+                scores.merge(document.getId(), 1.0 / (k + rank + 1), Double::sum);
+            }
+        }
+
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()))
+                .limit(limit)
+                .map(entry -> documents.get(entry.getKey()).mutate().score(entry.getValue()).build())
+                .toList();
+    }
+}
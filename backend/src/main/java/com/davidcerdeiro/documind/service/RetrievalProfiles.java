@@ -0,0 +1,57 @@
+package com.davidcerdeiro.documind.service;
+
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.davidcerdeiro.documind.exception.InvalidRequestException;
+
+// Latency/recall trade-offs a question can ask for (ChatRequest.profile), so interactive traffic and offline
+// evaluation can share a deployment:
+//   fast:     small HNSW search list and few candidates, the lowest latency
+//   balanced: the default for the chat UI
+//   exact:    no index at all when the question is scoped to at most exact-max-rows chunks (every distance is
+//             computed), otherwise a very large HNSW search list
+// candidates is how many chunks are fetched before re-ranking keeps the best ones, threshold the minimum similarity.
+@Component
+public class RetrievalProfiles {
+
+    private final Map<String, RetrievalProfile> profiles;
+
+    private final String defaultProfile;
+
+    public RetrievalProfiles(
+            @Value("${app.retrieval.profiles.default:balanced}") String defaultProfile,
+            @Value("${app.retrieval.profiles.fast.ef-search:40}") int fastEfSearch,
+            @Value("${app.retrieval.profiles.fast.candidates:16}") int fastCandidates,
+            @Value("${app.retrieval.profiles.fast.threshold:0.5}") double fastThreshold,
+            @Value("${app.retrieval.profiles.balanced.ef-search:100}") int balancedEfSearch,
+            @Value("${app.retrieval.profiles.balanced.candidates:50}") int balancedCandidates,
+            @Value("${app.retrieval.profiles.balanced.threshold:0.45}") double balancedThreshold,
+            @Value("${app.retrieval.profiles.exact.ef-search:400}") int exactEfSearch,
+            @Value("${app.retrieval.profiles.exact.candidates:50}") int exactCandidates,
+            @Value("${app.retrieval.profiles.exact.threshold:0.4}") double exactThreshold,
+            @Value("${app.retrieval.profiles.exact.exact-max-rows:50000}") int exactMaxRows) {
+        this.profiles = Map.of(
+                "fast", new RetrievalProfile("fast", fastEfSearch, fastCandidates, fastThreshold, 0),
+                "balanced", new RetrievalProfile("balanced", balancedEfSearch, balancedCandidates, balancedThreshold, 0),
+                "exact", new RetrievalProfile("exact", exactEfSearch, exactCandidates, exactThreshold, exactMaxRows));
+        this.defaultProfile = defaultProfile;
+        resolve(defaultProfile);
+    }
+
+    // The default profile when name is null or blank
+    public RetrievalProfile resolve(String name) {
+        String key = name == null || name.isBlank() ? defaultProfile : name.trim().toLowerCase(Locale.ROOT);
+        RetrievalProfile profile = profiles.get(key);
+        if (profile == null) {
+            throw new InvalidRequestException("Unknown retrieval profile: " + name + ". Use one of fast, balanced or exact.");
+        }
+        return profile;
+    }
+
+    // exactMaxRows is 0 for the profiles that always use the index
+    public record RetrievalProfile(String name, int efSearch, int candidates, double threshold, int exactMaxRows) {}
+}
@@ -0,0 +1,156 @@
+package com.davidcerdeiro.documind.service;
+
+import java.util.HashSet;
+import java.util.Set;
+
+// Cleans the text of a page in a single pass over a buffer reused for every page of the document:
+// - line endings (\r\n, \r) become \n, and runs of spaces, tabs, form feeds and non-breaking spaces become one space,
+//   dropped at the start and end of lines and of the page (so the result is trimmed)
+// - runs of blank lines become a single blank line, which still separates paragraphs
+// - with dehyphenate, a word split by a hyphen at the end of a line is joined ("docu-\nment" -> "document")
+// - with stripHeaders, running headers and footers are dropped: the first and last EDGE_LINES lines of the page
+//   are removed when the same line, ignoring digits, was at the same edge of an earlier page of the document
+//   ("Page 3 of 10" matches "Page 4 of 10"). The first page keeps its header, there is nothing to compare it with.
+// One instance per document, since it remembers the edges of the pages it has seen. Not thread-safe.
+public final class TextNormalizer {
+
+    private static final int EDGE_LINES = 2;
+
+    // Longer lines are content, not headers or footers
+    private static final int MAX_EDGE_LENGTH = 100;
+
+    // Bounds the memory of documents with thousands of pages
+    private static final int MAX_REMEMBERED_EDGES = 1000;
+
+    private final boolean dehyphenate;
+
+    private final boolean stripHeaders;
+
+    private final StringBuilder buffer = new StringBuilder(4096);
+
+    // 'H' or 'F' followed by the line with its digits replaced by '#'
+    private final Set<String> seenEdges = new HashSet<>();
+
+    public TextNormalizer(boolean dehyphenate, boolean stripHeaders) {
+        this.dehyphenate = dehyphenate;
+        this.stripHeaders = stripHeaders;
+    }
+
+    public String normalize(String text) {
+        buffer.setLength(0);
+        boolean pendingSpace = false;
+        int pendingNewlines = 0;
+
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\r') {
+                if (i + 1 < length && text.charAt(i + 1) == '\n') {
+                    continue;
+                }
+                c = '\n';
+            }
+
+            if (c == '\n') {
+                // Spaces before a line break are dropped
+                pendingSpace = false;
+                pendingNewlines++;
+            } else if (c == ' ' || c == '\t' || c == '\f' || c == '\u00A0') {
+                pendingSpace = true;
+            } else {
+                // Whitespace is only written once the next character shows it isn't leading or trailing
+                if (pendingNewlines > 0) {
+                    if (dehyphenate && pendingNewlines == 1 && Character.isLowerCase(c) && endsWithHyphenatedWord()) {
+                        buffer.setLength(buffer.length() - 1);
+                    } else if (!buffer.isEmpty()) {
+                        buffer.append(pendingNewlines > 1 ? "\n\n" : "\n");
+                    }
+                } else if (pendingSpace && !buffer.isEmpty()) {
+                    buffer.append(' ');
+                }
+                pendingSpace = false;
+                pendingNewlines = 0;
+                buffer.append(c);
+            }
+        }
+
+        if (stripHeaders) {
+            stripEdges();
+        }
+        return buffer.toString();
+    }
+
+    // A letter followed by the hyphen that ends the buffer
+    private boolean endsWithHyphenatedWord() {
+        int last = buffer.length() - 1;
+        return last > 0 && buffer.charAt(last) == '-' && Character.isLetter(buffer.charAt(last - 1));
+    }
+
+    // Every edge line is remembered, but lines are only removed from the edge inwards while they repeat
+    private void stripEdges() {
+        int headerEnd = 0;
+        int start = 0;
+        boolean removing = true;
+        for (int n = 0; n < EDGE_LINES && start < buffer.length(); n++) {
+            int end = buffer.indexOf("\n", start);
+            if (end < 0) {
+                end = buffer.length();
+            }
+            int next = skipNewlines(end);
+            if (remember('H', start, end) && removing) {
+                headerEnd = next;
+            } else {
+                removing = false;
+            }
+            start = next;
+        }
+
+        int footerStart = buffer.length();
+        int end = buffer.length();
+        removing = true;
+        for (int n = 0; n < EDGE_LINES && end > headerEnd; n++) {
+            int lineStart = Math.max(headerEnd, buffer.lastIndexOf("\n", end - 1) + 1);
+            int previous = skipNewlinesBackwards(lineStart, headerEnd);
+            if (remember('F', lineStart, end) && removing) {
+                footerStart = previous;
+            } else {
+                removing = false;
+            }
+            end = previous;
+        }
+
+        buffer.setLength(footerStart);
+        buffer.delete(0, headerEnd);
+    }
+
+    private int skipNewlines(int index) {
+        while (index < buffer.length() && buffer.charAt(index) == '\n') {
+            index++;
+        }
+        return index;
+    }
+
+    private int skipNewlinesBackwards(int index, int limit) {
+        while (index > limit && buffer.charAt(index - 1) == '\n') {
+            index--;
+        }
+        return index;
+    }
+
+    // True if the line was already seen at this edge of an earlier page
+    private boolean remember(char edge, int start, int end) {
+        if (end - start > MAX_EDGE_LENGTH || end == start) {
+            return false;
+        }
+        char[] key = new char[end - start + 1];
+        key[0] = edge;
+        for (int i = start; i < end; i++) {
+            char c = buffer.charAt(i);
+            key[i - start + 1] = Character.isDigit(c) ? '#' : c;
+        }
+        if (seenEdges.size() >= MAX_REMEMBERED_EDGES) {
+            seenEdges.clear();
+        }
+        return !seenEdges.add(new String(key));
+    }
+}
@@ -0,0 +1,241 @@
+package com.davidcerdeiro.documind.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.davidcerdeiro.documind.exception.ServiceBusyException;
+import com.davidcerdeiro.documind.exception.UploadTooLargeException;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PostConstruct;
+
+// Directory where uploads wait for their ingestion job, one <jobId>.pdf per job.
+// Files are written straight from the request stream (or moved there by the multipart resolver, which is
+// a rename when both are on the same file system), so an upload never sits on the heap.
+// The directory is bounded by maxSpoolSize: an upload that doesn't fit is rejected with a 503 before any
+// byte is written. A file is deleted when its job finishes or fails, and files left behind by a crash are
+// swept on startup and every cleanup interval unless a queued or running job still needs them.
+@Component
+public class UploadSpool {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadSpool.class);
+
+    private static final String EXTENSION = ".pdf";
+
+    private final JobStore jobStore;
+
+    private final Path directory;
+
+    private final long maxFileSize;
+
+    private final long maxSpoolSize;
+
+    private final Duration orphanAge;
+
+    private final long retryAfterSeconds;
+
+    // Bytes on disk plus bytes reserved by uploads still being written
+    private final AtomicLong used = new AtomicLong();
+
+    public UploadSpool(JobStore jobStore, MeterRegistry meterRegistry,
+            @Value("${app.upload.spool-dir:${java.io.tmpdir}/documind-spool}") Path directory,
+            @Value("${app.upload.max-file-size:200MB}") DataSize maxFileSize,
+            @Value("${app.upload.max-spool-size:2GB}") DataSize maxSpoolSize,
+            @Value("${app.upload.orphan-age:10m}") Duration orphanAge,
+            @Value("${app.ingestion.retry-after:30s}") Duration retryAfter) {
+        this.jobStore = jobStore;
+        this.directory = directory.toAbsolutePath();
+        this.maxFileSize = maxFileSize.toBytes();
+        this.maxSpoolSize = maxSpoolSize.toBytes();
+        this.orphanAge = orphanAge;
+        this.retryAfterSeconds = retryAfter.toSeconds();
+
+        Gauge.builder("documind.upload.spool.bytes", used, AtomicLong::get)
+                .description("Bytes of uploads waiting in the spool directory")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void initialize() throws IOException {
+        Files.createDirectories(directory);
+        // This instance isn't writing anything yet, but with a shared spool other replicas may be, so files younger
+        // than orphanAge are kept here too. The used bytes are counted from what is left.
+        sweep(orphanAge, true);
+    }
+
+    public long maxFileSize() {
+        return maxFileSize;
+    }
+
+    // Multipart upload, already parsed by the servlet container
+    public Path store(String jobId, MultipartFile file) {
+        long size = file.getSize();
+        checkSize(size);
+        reserve(size);
+
+        Path target = pathOf(jobId);
+        try {
+            // As a File, so the container can move its temporary part instead of copying it
+            file.transferTo(target.toFile());
+            return target;
+        } catch (IOException e) {
+            discard(target, size);
+            throw new UncheckedIOException("Could not store the upload", e);
+        } catch (RuntimeException e) {
+            discard(target, size);
+            throw e;
+        }
+    }
+
+    // Raw request body. contentLength is -1 when the client didn't send one, in which case the reservation
+    // grows while the body is copied and the upload is cut off as soon as it goes over a limit.
+    public Path store(String jobId, InputStream body, long contentLength) {
+        long reserved = Math.max(contentLength, 0);
+        checkSize(reserved);
+        reserve(reserved);
+
+        Path target = pathOf(jobId);
+        try (InputStream in = body; OutputStream out = Files.newOutputStream(target)) {
+            byte[] buffer = new byte[64 * 1024];
+            long written = 0;
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                written += read;
+                checkSize(written);
+                if (written > reserved) {
+                    reserve(written - reserved);
+                    reserved = written;
+                }
+                out.write(buffer, 0, read);
+            }
+            // Content-Length was larger than the body
+            used.addAndGet(written - reserved);
+            reserved = written;
+            return target;
+        } catch (IOException e) {
+            discard(target, reserved);
+            throw new UncheckedIOException("Could not store the upload", e);
+        } catch (RuntimeException e) {
+            discard(target, reserved);
+            throw e;
+        }
+    }
+
+    // Called once the job no longer needs its file, whether it completed or failed
+    public void release(Resource file) {
+        try {
+            release(file.getFile().toPath());
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", file.getDescription(), e.getMessage());
+        }
+    }
+
+    public void release(Path file) {
+        Path path = file.toAbsolutePath();
+        if (!path.startsWith(directory)) {
+            return;
+        }
+        try {
+            long size = Files.exists(path) ? Files.size(path) : 0;
+            if (Files.deleteIfExists(path)) {
+                used.addAndGet(-size);
+            }
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    public long usedBytes() {
+        return used.get();
+    }
+
+    // Uploads whose job is gone. orphanAge protects files just written by a request (on this or another
+    // instance sharing the directory) whose job row is not inserted yet.
+    @Scheduled(initialDelayString = "${app.ingestion.cleanup-interval:1h}", fixedDelayString = "${app.ingestion.cleanup-interval:1h}")
+    void sweepOrphans() throws IOException {
+        sweep(orphanAge, false);
+    }
+
+    private void sweep(Duration minAge, boolean recount) throws IOException {
+        Set<Path> needed = jobStore.unfinishedJobFiles();
+        Instant cutoff = Instant.now().minus(minAge);
+        long total = 0;
+        int deleted = 0;
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(Files::isRegularFile).toList();
+        }
+        for (Path file : files) {
+            try {
+                long size = Files.size(file);
+                FileTime modified = Files.getLastModifiedTime(file);
+                if (!needed.contains(file) && modified.toInstant().isBefore(cutoff)) {
+                    if (Files.deleteIfExists(file) && !recount) {
+                        used.addAndGet(-size);
+                    }
+                    deleted++;
+                } else {
+                    total += size;
+                }
+            } catch (IOException e) {
+                // Deleted meanwhile by the job that owned it
+            }
+        }
+
+        if (recount) {
+            used.set(total);
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} orphaned uploads from {}.", deleted, directory);
+        }
+    }
+
+    private Path pathOf(String jobId) {
+        return directory.resolve(jobId + EXTENSION);
+    }
+
+    private void checkSize(long size) {
+        if (size > maxFileSize) {
+            throw new UploadTooLargeException("The file is larger than the limit of " + DataSize.ofBytes(maxFileSize).toMegabytes() + "MB.");
+        }
+    }
+
+    private void reserve(long bytes) {
+        if (used.addAndGet(bytes) > maxSpoolSize) {
+            used.addAndGet(-bytes);
+            throw new ServiceBusyException("Too many uploads are waiting to be processed, try again later.", retryAfterSeconds);
+        }
+    }
+
+    private void discard(Path target, long reserved) {
+        try {
+            Files.deleteIfExists(target);
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", target, e.getMessage());
+        }
+        used.addAndGet(-reserved);
+    }
+}
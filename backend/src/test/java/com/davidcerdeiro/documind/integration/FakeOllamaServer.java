@@ -0,0 +1,245 @@
+package com.davidcerdeiro.documind.integration;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// Stand-in for Ollama that answers the endpoints Spring AI calls (/api/chat, /api/embed, /api/tags) with
+// configurable latency, so the application can be put under load without phi3 or nomic-embed-text.
+// Embeddings are deterministic: the words of the text are hashed into the vector, so texts sharing words are
+// close and retrieval still returns related chunks. Like Ollama, at most `parallel` requests are served at once
+// per model and the rest wait their turn.
+// Can also be run on its own to point a local backend at it (SPRING_AI_OLLAMA_BASE_URL=http://localhost:11434):
+// ./mvnw test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.davidcerdeiro.documind.integration.FakeOllamaServer
+public class FakeOllamaServer implements AutoCloseable {
+
+    private static final int DIMENSIONS = 768;
+
+    private static final String ANSWER = "According to the provided documents, the contract can be renewed for another term "
+            + "if both parties agree in writing before the notice period ends, and the supplier keeps the same service level. ";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final HttpServer server;
+
+    private final Settings settings;
+
+    private final Semaphore chatSlots;
+
+    private final Semaphore embedSlots;
+
+    private final AtomicLong chatRequests = new AtomicLong();
+
+    private final AtomicLong embedRequests = new AtomicLong();
+
+    private final AtomicLong embeddedTexts = new AtomicLong();
+
+    public FakeOllamaServer(int port, Settings settings) throws IOException {
+        this.settings = settings;
+        this.chatSlots = new Semaphore(settings.parallel(), true);
+        this.embedSlots = new Semaphore(settings.parallel(), true);
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        // Requests block while they simulate the model, one virtual thread each
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/api/chat", exchange -> handle(exchange, this::chat));
+        server.createContext("/api/embed", exchange -> handle(exchange, this::embed));
+        server.createContext("/api/tags", exchange -> handle(exchange, this::tags));
+        server.start();
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public long chatRequests() {
+        return chatRequests.get();
+    }
+
+    public long embedRequests() {
+        return embedRequests.get();
+    }
+
+    public long embeddedTexts() {
+        return embeddedTexts.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        try (exchange) {
+            handler.handle(exchange, objectMapper.readTree(exchange.getRequestBody().readAllBytes()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            exchange.sendResponseHeaders(500, -1);
+        }
+    }
+
+    // Answers are streamed token by token when the request asks for it (stream defaults to true in Ollama)
+    private void chat(HttpExchange exchange, JsonNode request) throws IOException, InterruptedException {
+        chatRequests.incrementAndGet();
+        String model = request.path("model").asText("phi3");
+        boolean stream = request.path("stream").asBoolean(true);
+        int promptTokens = 0;
+        for (JsonNode message : request.path("messages")) {
+            promptTokens += message.path("content").asText().length() / 4;
+        }
+
+        chatSlots.acquire();
+        try {
+            long start = System.nanoTime();
+            Thread.sleep(settings.firstToken());
+            List<String> tokens = tokens();
+
+            if (!stream) {
+                Thread.sleep(settings.tokenInterval().multipliedBy(tokens.size()));
+                send(exchange, "application/json", chatResponse(model, String.join("", tokens), true, promptTokens, tokens.size(), start));
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream body = exchange.getResponseBody();
+            for (String token : tokens) {
+                body.write(chatResponse(model, token, false, 0, 0, start));
+                body.write('\n');
+                body.flush();
+                Thread.sleep(settings.tokenInterval());
+            }
+            body.write(chatResponse(model, "", true, promptTokens, tokens.size(), start));
+            body.write('\n');
+        } finally {
+            chatSlots.release();
+        }
+    }
+
+    private void embed(HttpExchange exchange, JsonNode request) throws IOException, InterruptedException {
+        embedRequests.incrementAndGet();
+        List<String> inputs = new ArrayList<>();
+        JsonNode input = request.path("input");
+        if (input.isArray()) {
+            input.forEach(text -> inputs.add(text.asText()));
+        } else {
+            inputs.add(input.asText());
+        }
+        embeddedTexts.addAndGet(inputs.size());
+
+        embedSlots.acquire();
+        try {
+            Thread.sleep(settings.embedLatency().plus(settings.embedLatencyPerInput().multipliedBy(inputs.size())));
+        } finally {
+            embedSlots.release();
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("model", request.path("model").asText("nomic-embed-text"));
+        response.put("embeddings", inputs.stream().map(FakeOllamaServer::embedding).toList());
+        send(exchange, "application/json", objectMapper.writeValueAsBytes(response));
+    }
+
+    private void tags(HttpExchange exchange, JsonNode request) throws IOException {
+        send(exchange, "application/json", objectMapper.writeValueAsBytes(Map.of("models", List.of(
+                Map.of("name", "phi3:latest", "model", "phi3:latest"),
+                Map.of("name", "nomic-embed-text:latest", "model", "nomic-embed-text:latest")))));
+    }
+
+    private byte[] chatResponse(String model, String content, boolean done, int promptTokens, int evalTokens, long start) throws IOException {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("model", model);
+        response.put("created_at", Instant.now().toString());
+        response.put("message", Map.of("role", "assistant", "content", content));
+        response.put("done", done);
+        if (done) {
+            response.put("done_reason", "stop");
+            response.put("total_duration", System.nanoTime() - start);
+            response.put("prompt_eval_count", promptTokens);
+            response.put("eval_count", evalTokens);
+        }
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    // The canned answer cut into roughly `answerTokens` pieces
+    private List<String> tokens() {
+        List<String> tokens = new ArrayList<>();
+        String[] words = ANSWER.split("(?<= )");
+        for (int i = 0; i < settings.answerTokens(); i++) {
+            tokens.add(words[i % words.length]);
+        }
+        return tokens;
+    }
+
+    private static void send(HttpExchange exchange, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    // Feature hashing of the lower-cased words, L2-normalised
+    static float[] embedding(String text) {
+        float[] vector = new float[DIMENSIONS];
+        for (String word : text.toLowerCase().split("\\W+")) {
+            if (!word.isEmpty()) {
+                int hash = word.hashCode();
+                vector[Math.floorMod(hash, DIMENSIONS)] += (hash & 1) == 0 ? 1 : -1;
+            }
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0) {
+            vector[0] = 1;
+            return vector;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    // Latencies are read from the load.ollama.* system properties; the defaults are in the range of phi3 and
+    // nomic-embed-text on a laptop CPU
+    public record Settings(Duration firstToken, Duration tokenInterval, int answerTokens, Duration embedLatency, Duration embedLatencyPerInput,
+            int parallel) {
+
+        public static Settings fromSystemProperties() {
+            return new Settings(
+                    Duration.ofMillis(Long.getLong("load.ollama.first-token-ms", 300)),
+                    Duration.ofMillis(Long.getLong("load.ollama.token-interval-ms", 20)),
+                    Integer.getInteger("load.ollama.answer-tokens", 60),
+                    Duration.ofMillis(Long.getLong("load.ollama.embed-ms", 20)),
+                    Duration.ofMillis(Long.getLong("load.ollama.embed-per-input-ms", 5)),
+                    Integer.getInteger("load.ollama.parallel", 4));
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        void handle(HttpExchange exchange, JsonNode request) throws IOException, InterruptedException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        FakeOllamaServer server = new FakeOllamaServer(Integer.getInteger("load.ollama.port", 11434), Settings.fromSystemProperties());
+        System.out.println("Fake Ollama listening on " + server.baseUrl() + " with " + server.settings);
+        Thread.currentThread().join();
+    }
+}
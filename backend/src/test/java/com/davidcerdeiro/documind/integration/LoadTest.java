@@ -0,0 +1,288 @@
+package com.davidcerdeiro.documind.integration;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// End-to-end load test: the whole application with its production configuration (src/main/resources/application.yml),
+// a pgvector container and FakeOllamaServer in place of Ollama. Virtual users upload PDFs and poll their job
+// until it finishes, while others ask questions on /api/chat. At the end it prints requests, throughput and
+// p50/p95/p99 latency per endpoint (also written to target/load-test.json). Nothing is asserted.
+// Run with: ./mvnw test -Dtest=LoadTest -Dbenchmark=true [-Dload.duration=60s] [-Dload.uploaders=2] [-Dload.chat-users=8]
+//   [-Dload.questions=200] [-Dload.pdf=/path/to/file.pdf] [-Dload.ollama.*, see FakeOllamaServer.Settings]
+// Any application setting can be overridden the same way, e.g. -Dapp.cache.answer.enabled=false.
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.config.additional-location=file:src/main/resources/application.yml")
+public class LoadTest {
+
+    private static final String UPLOAD = "POST /api/docs/upload";
+
+    private static final String STATUS = "GET /api/docs/status";
+
+    private static final String CHAT = "POST /api/chat";
+
+    // Not a request: from the upload to the job reaching COMPLETED
+    private static final String INGESTION = "ingestion (upload to completed)";
+
+    private static final String[] VOCABULARY = ("contract term renewal payment invoice supplier customer delivery warranty clause "
+            + "liability notice period termination agreement service level report revenue growth cost budget risk compliance "
+            + "audit policy data protection security incident employee training project milestone approval").split(" ");
+
+    private static PostgreSQLContainer<?> postgres;
+
+    private static FakeOllamaServer ollama;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+
+    @LocalServerPort
+    private int port;
+
+    // Only called when the test is enabled, so the container and the fake server start on demand
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) throws Exception {
+        postgres = new PostgreSQLContainer<>(DockerImageName.parse("pgvector/pgvector:pg17").asCompatibleSubstituteFor("postgres"));
+        postgres.start();
+        ollama = new FakeOllamaServer(0, FakeOllamaServer.Settings.fromSystemProperties());
+        String spoolDir = Files.createTempDirectory("documind-load").toString();
+
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.ai.ollama.base-url", ollama::baseUrl);
+        registry.add("spring.ai.vectorstore.pgvector.index-type", () -> "NONE");
+        registry.add("app.upload.spool-dir", () -> spoolDir);
+    }
+
+    @AfterAll
+    static void stop() {
+        if (ollama != null) {
+            ollama.close();
+        }
+        if (postgres != null) {
+            postgres.stop();
+        }
+    }
+
+    @Test
+    void run() throws Exception {
+        Duration duration = Duration.parse("PT" + System.getProperty("load.duration", "60s").toUpperCase());
+        int uploaders = Integer.getInteger("load.uploaders", 2);
+        int chatUsers = Integer.getInteger("load.chat-users", 8);
+        Duration pollInterval = Duration.ofMillis(Long.getLong("load.poll-interval-ms", 1000));
+        String pdfPath = System.getProperty("load.pdf");
+        byte[] pdf = pdfPath != null ? Files.readAllBytes(Path.of(pdfPath)) : new ClassPathResource("pdfs/sample-test.pdf").getContentAsByteArray();
+
+        Random random = new Random(42);
+        List<String> questions = new ArrayList<>();
+        for (int i = 0; i < Integer.getInteger("load.questions", 200); i++) {
+            questions.add(question(random));
+        }
+
+        // One document before the clock starts, so the first questions have something to retrieve
+        String seedJob = upload(pdf, "10.0.0.1", false);
+        if (seedJob != null) {
+            poll(seedJob, pollInterval, System.nanoTime() + Duration.ofMinutes(5).toNanos(), false);
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < uploaders; i++) {
+                // Each uploader looks like a different client to the fair ingestion queue
+                String client = "10.0.1." + (i + 1);
+                users.submit(() -> uploader(pdf, client, pollInterval, deadline));
+            }
+            for (int i = 0; i < chatUsers; i++) {
+                users.submit(() -> chatUser(questions, deadline));
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        report(seconds, uploaders, chatUsers, questions.size());
+    }
+
+    private Void uploader(byte[] pdf, String client, Duration pollInterval, long deadline) throws Exception {
+        while (System.nanoTime() < deadline) {
+            long start = System.nanoTime();
+            String jobId = upload(pdf, client, true);
+            if (jobId == null) {
+                Thread.sleep(pollInterval);
+            } else if (poll(jobId, pollInterval, deadline, true)) {
+                stats(INGESTION).record(System.nanoTime() - start, 200);
+            }
+        }
+        return null;
+    }
+
+    private Void chatUser(List<String> questions, long deadline) throws Exception {
+        while (System.nanoTime() < deadline) {
+            String question = questions.get(ThreadLocalRandom.current().nextInt(questions.size()));
+            HttpRequest request = HttpRequest.newBuilder(uri("/api/chat"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(Map.of("question", question))))
+                    .build();
+            send(CHAT, request, true);
+        }
+        return null;
+    }
+
+    // Job id, or null if the upload was rejected
+    private String upload(byte[] pdf, String client, boolean measured) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri("/api/docs/upload?fileName=load-test.pdf"))
+                .header("Content-Type", "application/pdf")
+                .header("X-Forwarded-For", client)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(pdf))
+                .build();
+        HttpResponse<String> response = send(UPLOAD, request, measured);
+        return response.statusCode() == 202 ? objectMapper.readTree(response.body()).path("jobId").asText() : null;
+    }
+
+    // Polls the job like the frontend does; true if it completed before the deadline
+    private boolean poll(String jobId, Duration pollInterval, long deadline, boolean measured) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri("/api/docs/status/" + jobId)).GET().build();
+        while (System.nanoTime() < deadline) {
+            HttpResponse<String> response = send(STATUS, request, measured);
+            if (response.statusCode() == 200) {
+                JsonNode status = objectMapper.readTree(response.body());
+                switch (status.path("status").asText()) {
+                    case "COMPLETED":
+                        return true;
+                    case "ERROR":
+                    case "NOT_FOUND":
+                        return false;
+                    default:
+                        break;
+                }
+            }
+            Thread.sleep(pollInterval);
+        }
+        return false;
+    }
+
+    private HttpResponse<String> send(String endpoint, HttpRequest request, boolean measured) throws Exception {
+        long start = System.nanoTime();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (measured) {
+            stats(endpoint).record(System.nanoTime() - start, response.statusCode());
+        }
+        return response;
+    }
+
+    private EndpointStats stats(String endpoint) {
+        return stats.computeIfAbsent(endpoint, key -> new EndpointStats());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static String question(Random random) {
+        StringBuilder question = new StringBuilder("What does the document say about the");
+        int words = 2 + random.nextInt(4);
+        for (int i = 0; i < words; i++) {
+            question.append(' ').append(VOCABULARY[random.nextInt(VOCABULARY.length)]);
+        }
+        return question.append('?').toString();
+    }
+
+    private void report(double seconds, int uploaders, int chatUsers, int questions) throws Exception {
+        System.out.printf("%n%.0f s, %d uploaders, %d chat users, %d distinct questions%n", seconds, uploaders, chatUsers, questions);
+        System.out.printf("%-32s %8s %8s %8s %8s %9s %9s %9s %9s%n", "endpoint", "requests", "rejected", "errors", "req/s", "p50 ms", "p95 ms",
+                "p99 ms", "max ms");
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        for (String endpoint : List.of(UPLOAD, STATUS, INGESTION, CHAT)) {
+            EndpointStats endpointStats = stats.get(endpoint);
+            if (endpointStats == null) {
+                continue;
+            }
+            Map<String, Object> result = endpointStats.summary(seconds);
+            results.put(endpoint, result);
+            System.out.printf("%-32s %8d %8d %8d %8.2f %9.1f %9.1f %9.1f %9.1f%n", endpoint, result.get("requests"), result.get("rejected"),
+                    result.get("errors"), result.get("throughput"), result.get("p50"), result.get("p95"), result.get("p99"), result.get("max"));
+        }
+        System.out.printf("Ollama: %d chat requests, %d embed requests, %d texts embedded%n", ollama.chatRequests(), ollama.embedRequests(),
+                ollama.embeddedTexts());
+
+        results.put("ollama", Map.of("chatRequests", ollama.chatRequests(), "embedRequests", ollama.embedRequests(),
+                "embeddedTexts", ollama.embeddedTexts()));
+        File output = new File("target/load-test.json");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(output, results);
+        System.out.println("Results written to " + output.getPath());
+    }
+
+    // 429 and 503 are back-pressure (queue or spool full), counted apart from errors
+    private static class EndpointStats {
+
+        private final List<Long> latencies = new ArrayList<>();
+
+        private int rejected;
+
+        private int errors;
+
+        synchronized void record(long nanos, int statusCode) {
+            latencies.add(nanos);
+            if (statusCode == 429 || statusCode == 503) {
+                rejected++;
+            } else if (statusCode >= 400) {
+                errors++;
+            }
+        }
+
+        synchronized Map<String, Object> summary(double seconds) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("requests", sorted.length);
+            summary.put("rejected", rejected);
+            summary.put("errors", errors);
+            summary.put("throughput", sorted.length / seconds);
+            summary.put("p50", percentile(sorted, 50));
+            summary.put("p95", percentile(sorted, 95));
+            summary.put("p99", percentile(sorted, 99));
+            summary.put("max", sorted.length > 0 ? sorted[sorted.length - 1] / 1e6 : 0.0);
+            return summary;
+        }
+
+        // Nearest rank, in milliseconds
+        private static double percentile(long[] sorted, int percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+            return sorted[Math.max(0, rank - 1)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.davidcerdeiro.documind.integration;
+
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.ai.document.Document;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import com.davidcerdeiro.documind.repository.VectorBulkWriter;
+import com.davidcerdeiro.documind.repository.VectorStorageMode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+
+// Compares the vector storage modes on the same data: index size, build time, query latency and recall@k of
+// the production search (first pass on the mode's index + exact rescoring) against an exact brute-force search.
+// Vectors are synthetic but clustered like real embeddings; nothing is asserted, the results are printed.
+// Run with: ./mvnw test -Dtest=VectorStorageBenchmark -Dbenchmark=true [-Dbenchmark.rows=100000] [-Dbenchmark.rescore-factor=4]
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class VectorStorageBenchmark {
+
+    private static final int DIMENSIONS = 768;
+
+    private static final int TOP_K = 10;
+
+    private static final int QUERIES = 200;
+
+    private static final int CLUSTERS = 100;
+
+    @Test
+    void compareStorageModes() throws Exception {
+        int rows = Integer.getInteger("benchmark.rows", 20_000);
+        int rescoreFactor = Integer.getInteger("benchmark.rescore-factor", 4);
+        Random random = new Random(42);
+
+        float[][] centers = new float[CLUSTERS][];
+        for (int i = 0; i < CLUSTERS; i++) {
+            centers[i] = randomVector(random, null, 1);
+        }
+        float[][] vectors = new float[rows][];
+        for (int i = 0; i < rows; i++) {
+            vectors[i] = randomVector(random, centers[random.nextInt(CLUSTERS)], 0.3);
+        }
+        float[][] queries = new float[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = randomVector(random, centers[random.nextInt(CLUSTERS)], 0.3);
+        }
+
+        try (PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(DockerImageName.parse("pgvector/pgvector:pg17").asCompatibleSubstituteFor("postgres"))) {
+            postgres.start();
+            try (Connection connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())) {
+                List<UUID> ids = load(connection, vectors);
+                List<Set<UUID>> exact = Arrays.stream(queries).map(query -> exactTopK(query, vectors, ids)).toList();
+
+                System.out.printf("%n%d rows, %d dimensions, %d queries, top %d, rescore factor %d%n", rows, DIMENSIONS, QUERIES, TOP_K, rescoreFactor);
+                System.out.printf("%-8s %12s %12s %10s %10s %10s%n", "mode", "index size", "build", "p50", "p95", "recall@" + TOP_K);
+                for (VectorStorageMode mode : VectorStorageMode.values()) {
+                    run(connection, mode, mode == VectorStorageMode.FLOAT ? 1 : rescoreFactor, queries, exact);
+                }
+            }
+        }
+    }
+
+    private static void run(Connection connection, VectorStorageMode mode, int rescoreFactor, float[][] queries, List<Set<UUID>> exact) throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            for (VectorStorageMode other : VectorStorageMode.values()) {
+                statement.execute("DROP INDEX IF EXISTS " + other.indexName());
+            }
+            statement.execute("SET maintenance_work_mem = '1GB'");
+            long start = System.nanoTime();
+            statement.execute(mode.createIndexSql(DIMENSIONS, false));
+            long buildMillis = (System.nanoTime() - start) / 1_000_000;
+            statement.execute("ANALYZE vector_store");
+
+            long indexBytes;
+            try (ResultSet rs = statement.executeQuery("SELECT pg_relation_size('" + mode.indexName() + "')")) {
+                rs.next();
+                indexBytes = rs.getLong(1);
+            }
+
+            int shortlist = TOP_K * rescoreFactor;
+            statement.execute("SET hnsw.ef_search = " + Math.max(40, shortlist));
+
+            long[] latencies = new long[queries.length];
+            double recall = 0;
+            try (PreparedStatement ps = connection.prepareStatement(mode.searchSql(DIMENSIONS))) {
+                // Warm-up, so the index is in the buffer cache for every mode
+                for (float[] query : queries) {
+                    search(ps, query, shortlist);
+                }
+                for (int i = 0; i < queries.length; i++) {
+                    long queryStart = System.nanoTime();
+                    Set<UUID> found = search(ps, queries[i], shortlist);
+                    latencies[i] = System.nanoTime() - queryStart;
+                    found.retainAll(exact.get(i));
+                    recall += (double) found.size() / TOP_K;
+                }
+            }
+            Arrays.sort(latencies);
+
+            System.out.printf("%-8s %9.1f MB %9d ms %7.2f ms %7.2f ms %10.3f%n", mode.name().toLowerCase(), indexBytes / 1048576.0, buildMillis,
+                    latencies[latencies.length / 2] / 1e6, latencies[latencies.length * 95 / 100] / 1e6, recall / queries.length);
+        }
+    }
+
+    private static Set<UUID> search(PreparedStatement ps, float[] query, int shortlist) throws Exception {
+        PGvector vector = new PGvector(query);
+        ps.setObject(1, vector);
+        ps.setString(2, null);
+        ps.setString(3, null);
+        ps.setObject(4, vector);
+        ps.setInt(5, shortlist);
+        ps.setInt(6, TOP_K);
+        Set<UUID> ids = new HashSet<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                ids.add(rs.getObject("id", UUID.class));
+            }
+        }
+        return ids;
+    }
+
+    // Same table as the vector store creates, loaded with the COPY format of the ingestion writer
+    private static List<UUID> load(Connection connection, float[][] vectors) throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE EXTENSION IF NOT EXISTS vector");
+            statement.execute("CREATE TABLE vector_store (id uuid PRIMARY KEY, content text, metadata json, embedding vector(" + DIMENSIONS + "))");
+        }
+
+        List<UUID> ids = IntStream.range(0, vectors.length).mapToObj(i -> UUID.randomUUID()).toList();
+        List<Document> chunks = ids.stream()
+                .map(id -> Document.builder().id(id.toString()).text("chunk").metadata(Map.of("document_id", "benchmark")).build())
+                .toList();
+        VectorBulkWriter writer = new VectorBulkWriter(null, null, new ObjectMapper(), "copy", "1GB");
+        try (OutputStream out = new PGCopyOutputStream(connection.unwrap(PGConnection.class),
+                "COPY vector_store (id, content, metadata, embedding) FROM STDIN (FORMAT binary)")) {
+            writer.writeCopyData(out, chunks, Arrays.asList(vectors));
+        }
+        return ids;
+    }
+
+    private static Set<UUID> exactTopK(float[] query, float[][] vectors, List<UUID> ids) {
+        List<Integer> order = new ArrayList<>(IntStream.range(0, vectors.length).boxed().toList());
+        double[] distances = Arrays.stream(vectors).mapToDouble(vector -> 1 - dot(query, vector)).toArray();
+        order.sort(Comparator.comparingDouble(i -> distances[i]));
+        Set<UUID> top = new HashSet<>();
+        order.stream().limit(TOP_K).forEach(i -> top.add(ids.get(i)));
+        return top;
+    }
+
+    // Unit length, so the dot product is the cosine similarity
+    private static float[] randomVector(Random random, float[] center, double noise) {
+        float[] vector = new float[DIMENSIONS];
+        double norm = 0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) ((center != null ? center[i] : 0) + random.nextGaussian() * noise / Math.sqrt(DIMENSIONS));
+            norm += vector[i] * vector[i];
+        }
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,75 @@
+package com.davidcerdeiro.documind.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import com.davidcerdeiro.documind.cache.AnswerCache;
+import com.davidcerdeiro.documind.service.CorpusVersion;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class AnswerCacheUnitTest {
+
+    private CorpusVersion corpusVersion;
+
+    private AnswerCache answerCache;
+
+    private String contextKey;
+
+    @BeforeEach
+    void setUp() {
+        corpusVersion = new CorpusVersion();
+        answerCache = new AnswerCache(corpusVersion, new SimpleMeterRegistry(), 10, 4, 0.05, Duration.ofHours(1));
+        contextKey = AnswerCache.contextKey(List.of(
+            new Document("chunk-1", "Cristiano Ronaldo is my favourite player", Map.of()),
+            new Document("chunk-2", "He plays as a forward", Map.of())));
+    }
+
+    @Test
+    void testCloseQuestionsShareTheAnswer() {
+        answerCache.put(new float[] { 1f, 0f, 0f }, contextKey, "Cristiano Ronaldo", corpusVersion.current());
+
+        AnswerCache.CachedAnswer close = answerCache.find(new float[] { 0.99f, 0.05f, 0f }, contextKey);
+        AnswerCache.CachedAnswer far = answerCache.find(new float[] { 0f, 1f, 0f }, contextKey);
+
+        assertNotNull(close);
+        assertEquals("Cristiano Ronaldo", close.answer());
+        assertNull(far, "A different question should reach the model");
+    }
+
+    @Test
+    void testNoInfoAnswersAreCachedUntilTheCorpusChanges() {
+        float[] question = { 0f, 0f, 1f };
+        answerCache.put(question, contextKey, null, corpusVersion.current());
+
+        AnswerCache.CachedAnswer cached = answerCache.find(question, contextKey);
+        assertNotNull(cached);
+        assertNull(cached.answer(), "The no information outcome should be cached");
+
+        corpusVersion.increment();
+        assertNull(answerCache.find(question, contextKey));
+    }
+
+    @Test
+    void testAnswersExpireAfterTheTtl() throws InterruptedException {
+        AnswerCache shortLived = new AnswerCache(corpusVersion, new SimpleMeterRegistry(), 10, 4, 0.05, Duration.ofMillis(20));
+        float[] question = { 1f, 0f, 0f };
+        shortLived.put(question, contextKey, "Cristiano Ronaldo", corpusVersion.current());
+        assertNotNull(shortLived.find(question, contextKey));
+
+        Thread.sleep(50);
+
+        // --- ASSERT ---
+        // Same corpus version, but too old to be trusted
+        assertNull(shortLived.find(question, contextKey));
+    }
+}
@@ -0,0 +1,122 @@
+package com.davidcerdeiro.documind.unit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+
+import com.davidcerdeiro.documind.cache.CachingEmbeddingModel;
+import com.davidcerdeiro.documind.repository.EmbeddingCacheRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class CachingEmbeddingModelUnitTest {
+
+    @Mock
+    private EmbeddingModel delegate;
+
+    @Mock
+    private EmbeddingCacheRepository repository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private CachingEmbeddingModel cachingModel;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cachingModel = new CachingEmbeddingModel(delegate, "nomic-embed-text", 100, 10, repository, meterRegistry);
+    }
+
+    @Test
+    void testRepeatedChunksAreEmbeddedOnce() {
+        float[] vector = { 0.1f, 0.2f };
+        when(repository.findAll(anyCollection())).thenReturn(Map.of());
+        when(delegate.embed(ArgumentMatchers.<List<Document>>any(), any(), any())).thenReturn(List.of(vector));
+
+        // --- ACT ---
+        // The same text twice in one batch, then again with different spacing
+        List<float[]> first = embed(new Document("Clause 4.2  applies"), new Document("Clause 4.2 applies"));
+        List<float[]> second = embed(new Document("Clause 4.2\napplies"));
+
+        // --- ASSERT ---
+        verify(delegate, times(1)).embed(ArgumentMatchers.<List<Document>>any(), any(), any());
+        verify(repository, times(1)).saveAll(eq("nomic-embed-text"), anyMap());
+        assertArrayEquals(vector, first.get(0));
+        assertArrayEquals(vector, first.get(1));
+        assertArrayEquals(vector, second.get(0));
+        assertEquals(1.0, count("hit", "memory"));
+        assertEquals(1.0, count("miss", "none"));
+    }
+
+    @Test
+    void testStoredEmbeddingsSkipTheModel() {
+        Document chunk = new Document("Shared boilerplate");
+        float[] stored = { 0.3f, 0.4f };
+        when(repository.findAll(anyCollection())).thenReturn(Map.of(cachingModel.cacheKey(chunk.getText()), stored));
+
+        List<float[]> embeddings = embed(chunk);
+
+        verify(delegate, never()).embed(ArgumentMatchers.<List<Document>>any(), any(), any());
+        assertArrayEquals(stored, embeddings.get(0));
+        assertEquals(1.0, count("hit", "database"));
+    }
+
+    @Test
+    void testQuestionsDontShareTheChunkCache() {
+        float[] chunkVector = { 0.1f, 0.2f };
+        float[] questionVector = { 0.5f, 0.6f };
+        when(repository.findAll(anyCollection())).thenReturn(Map.of());
+        when(delegate.embed(ArgumentMatchers.<List<Document>>any(), any(), any())).thenReturn(List.of(chunkVector));
+        when(delegate.call(any(EmbeddingRequest.class))).thenReturn(new EmbeddingResponse(List.of(new Embedding(questionVector, 0))));
+
+        // --- ACT ---
+        embed(new Document("Termination notice"));
+        // A question with the same text as a chunk, then more questions than the question cache holds
+        float[] question = cachingModel.embed("Termination notice");
+        for (int i = 0; i < 20; i++) {
+            cachingModel.embed("Question " + i);
+        }
+        List<float[]> chunkAgain = embed(new Document("Termination notice"));
+
+        // --- ASSERT ---
+        // Each gets the vector of its own kind, and the questions didn't evict the chunk
+        assertArrayEquals(questionVector, question);
+        assertArrayEquals(chunkVector, chunkAgain.get(0));
+        verify(delegate, times(1)).embed(ArgumentMatchers.<List<Document>>any(), any(), any());
+        assertEquals(1.0, count("hit", "memory"));
+        assertEquals(0.0, meterRegistry.get("documind.query.embedding.cache").tag("result", "hit").counter().count());
+    }
+
+    private List<float[]> embed(Document... documents) {
+        return cachingModel.embed(List.of(documents), EmbeddingOptions.builder().build(), new TokenCountBatchingStrategy());
+    }
+
+    private double count(String result, String tier) {
+        return meterRegistry.get("documind.embedding.cache").tag("result", result).tag("tier", tier).counter().count();
+    }
+}
@@ -0,0 +1,73 @@
+package com.davidcerdeiro.documind.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import com.davidcerdeiro.documind.cache.TextFingerprint;
+import com.davidcerdeiro.documind.dto.StoredChunk;
+import com.davidcerdeiro.documind.service.ChunkDiff;
+import com.davidcerdeiro.documind.service.DocumentService;
+
+public class ChunkDiffUnitTest {
+
+    @Test
+    void testOnlyChangedChunksAreLeftToEmbed() {
+        ChunkDiff diff = new ChunkDiff(List.of(
+                stored("a", "old-job", 0, "The supplier delivers within thirty days."),
+                stored("b", "old-job", 1, "The customer pays within sixty dyas."),
+                stored("c", "old-job", 2, "Either party may terminate.")));
+
+        // --- ASSERT ---
+        // The typo fix is new, the other two chunks are reused without touching their rows
+        assertTrue(diff.reuse(chunk("new-job", 0, "The supplier delivers within thirty days.")));
+        assertFalse(diff.reuse(chunk("new-job", 1, "The customer pays within sixty days.")));
+        assertTrue(diff.reuse(chunk("new-job", 2, "Either party may terminate.")));
+        assertEquals(List.of("a", "c"), diff.reusedIds());
+        assertTrue(diff.movedMetadata().isEmpty());
+    }
+
+    @Test
+    void testRepeatedTextsAreMatchedOnceAndMovedChunksGetTheirNewPosition() {
+        ChunkDiff diff = new ChunkDiff(List.of(
+                stored("a", "old-job", 0, "Confidential"),
+                stored("b", "old-job", 1, "Definitions apply."),
+                stored("c", "old-job", 2, "Confidential")));
+
+        // A page inserted before them shifts the reused chunks, and a third copy of the boilerplate has nothing left to reuse
+        assertFalse(diff.reuse(chunk("new-job", 0, "A new introduction.")));
+        assertTrue(diff.reuse(chunk("new-job", 1, "Confidential")));
+        assertTrue(diff.reuse(chunk("new-job", 2, "Definitions apply.")));
+        assertTrue(diff.reuse(chunk("new-job", 3, "Confidential")));
+        assertFalse(diff.reuse(chunk("new-job", 4, "Confidential")));
+
+        // --- ASSERT ---
+        assertEquals(List.of("a", "b", "c"), diff.reusedIds());
+        assertEquals(3, diff.movedMetadata().size());
+        assertEquals(3, diff.movedMetadata().get("c").get(DocumentService.METADATA_CHUNK_INDEX));
+    }
+
+    private static StoredChunk stored(String id, String jobId, int index, String text) {
+        return new StoredChunk(id, TextFingerprint.sha256(text), metadata(jobId, index, text));
+    }
+
+    private static Document chunk(String jobId, int index, String text) {
+        return new Document(text, metadata(jobId, index, text));
+    }
+
+    private static Map<String, Object> metadata(String jobId, int index, String text) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(DocumentService.METADATA_DOCUMENT_ID, "contract");
+        metadata.put(DocumentService.METADATA_JOB_ID, jobId);
+        metadata.put(DocumentService.METADATA_CHUNK_INDEX, index);
+        metadata.put(DocumentService.METADATA_CONTENT_HASH, TextFingerprint.sha256(text));
+        return metadata;
+    }
+}
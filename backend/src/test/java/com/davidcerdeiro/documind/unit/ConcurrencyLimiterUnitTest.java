@@ -0,0 +1,68 @@
+package com.davidcerdeiro.documind.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.davidcerdeiro.documind.concurrency.ConcurrencyLimiter;
+import com.davidcerdeiro.documind.exception.ServiceBusyException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ConcurrencyLimiterUnitTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = new ConcurrencyLimiter("ollama", 1, Duration.ofMillis(50), meterRegistry);
+    }
+
+    @Test
+    void testCallIsRejectedWhenAllSlotsAreBusy() {
+        limiter.acquire();
+
+        // --- ACT ---
+        ServiceBusyException exception = assertThrows(ServiceBusyException.class, () -> limiter.call(() -> "answer"));
+
+        // --- ASSERT ---
+        assertEquals(1, exception.getRetryAfterSeconds());
+        assertEquals(1.0, meterRegistry.get("documind.concurrency.rejected").tag("resource", "ollama").counter().count());
+        assertEquals(1.0, gauge("documind.concurrency.active"));
+    }
+
+    @Test
+    void testSlotIsReleasedAfterAFailedCall() {
+        assertThrows(IllegalStateException.class, () -> limiter.call(() -> {
+            throw new IllegalStateException("Ollama is down");
+        }));
+
+        assertEquals("answer", limiter.call(() -> "answer"));
+        assertEquals(0.0, gauge("documind.concurrency.active"));
+    }
+
+    @Test
+    void testSlotIsReleasedOnceWhenClosedTwice() {
+        ConcurrencyLimiter.Slot slot = limiter.acquireSlot();
+
+        // --- ACT ---
+        slot.close();
+        slot.close();
+
+        // --- ASSERT ---
+        assertEquals(0.0, gauge("documind.concurrency.active"));
+        limiter.acquire();
+        assertThrows(ServiceBusyException.class, () -> limiter.acquire());
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).tag("resource", "ollama").gauge().value();
+    }
+}
@@ -0,0 +1,56 @@
+package com.davidcerdeiro.documind.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import com.davidcerdeiro.documind.service.ContextBuilder;
+import com.davidcerdeiro.documind.service.ContextBuilder.BuiltContext;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ContextBuilderUnitTest {
+
+    private final ContextBuilder contextBuilder = new ContextBuilder(new SimpleMeterRegistry(), 1500, 20, 0.9);
+
+    @Test
+    void testNeighbouringChunksAreMergedWithoutRepeatingTheOverlap() {
+        String shared = "the supplier must deliver within thirty days";
+        Document second = chunk("doc-1", 5, shared + " of the order. Late deliveries are penalised.");
+        Document first = chunk("doc-1", 4, "Clause 7.1 Delivery: " + shared);
+
+        // --- ACT ---
+        // Retrieved out of document order
+        BuiltContext context = contextBuilder.build(List.of(second, first));
+
+        // --- ASSERT ---
+        assertEquals(1, context.text().split("<fragment>").length - 1);
+        assertTrue(context.text().contains("Clause 7.1 Delivery: " + shared + " of the order."));
+        assertEquals(context.text().indexOf(shared), context.text().lastIndexOf(shared));
+        assertTrue(context.tokensSaved() > 0);
+    }
+
+    @Test
+    void testNearDuplicatesAreDroppedAndBudgetIsRespected() {
+        String boilerplate = "This document is confidential and may not be distributed without written consent of the company.";
+        Document best = chunk("doc-1", 0, boilerplate);
+        Document copy = chunk("doc-2", 0, boilerplate + " ");
+        Document tooLong = chunk("doc-3", 0, "word ".repeat(2000));
+
+        BuiltContext context = new ContextBuilder(new SimpleMeterRegistry(), 100, 20, 0.9).build(List.of(best, copy, tooLong));
+
+        assertEquals(1, context.text().split("<fragment>").length - 1);
+        assertFalse(context.text().contains("word word"));
+        assertTrue(context.tokens() <= 100);
+    }
+
+    private static Document chunk(String documentId, int index, String text) {
+        return new Document(text, Map.of("document_id", documentId, "chunk_index", index));
+    }
+}
@@ -0,0 +1,132 @@
+package com.davidcerdeiro.documind.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.davidcerdeiro.documind.concurrency.SingleFlight;
+import com.davidcerdeiro.documind.dto.BatchUploadResponse;
+import com.davidcerdeiro.documind.dto.ChatRequest;
+import com.davidcerdeiro.documind.dto.ChatResponse;
+import com.davidcerdeiro.documind.exception.QueueFullException;
+import com.davidcerdeiro.documind.facade.DocumentFacade;
+import com.davidcerdeiro.documind.service.CorpusVersion;
+import com.davidcerdeiro.documind.service.DocumentService;
+import com.davidcerdeiro.documind.service.IngestionQueue;
+import com.davidcerdeiro.documind.service.UploadSpool;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class DocumentFacadeUnitTest {
+
+    @Mock
+    private DocumentService documentService;
+
+    @Mock
+    private IngestionQueue ingestionQueue;
+
+    @Mock
+    private UploadSpool uploadSpool;
+
+    private DocumentFacade documentFacade;
+
+    @Captor
+    private ArgumentCaptor<Filter.Expression> filter;
+
+    @BeforeEach
+    void setUp() {
+        documentFacade = new DocumentFacade(documentService, ingestionQueue, uploadSpool, new CorpusVersion(),
+                new SingleFlight<>("chat", new SimpleMeterRegistry()), 500);
+    }
+
+    @Test
+    void testQuestionIsScopedToCollectionAndDocuments() {
+        List<Document> chunks = List.of(new Document("The contract ends in 2027"));
+        when(documentService.similaritySearch(eq("When does it end?"), any(), any())).thenReturn(chunks);
+        when(documentService.cachedPromptModel(anyList(), any())).thenReturn(new ChatResponse("In 2027", false));
+
+        // --- ACT ---
+        documentFacade.promptModel(new ChatRequest("When does it end?", "contracts", List.of("doc-1", "doc-2")));
+
+        // --- ASSERT ---
+        verify(documentService).similaritySearch(eq("When does it end?"), filter.capture(), any());
+        FilterExpressionBuilder b = new FilterExpressionBuilder();
+        Filter.Expression expected = b.and(b.eq("collection", "contracts"), b.in("document_id", "doc-1", "doc-2")).build();
+        assertEquals(expected, filter.getValue());
+    }
+
+    @Test
+    void testQuestionWithoutScopeSearchesEverything() {
+        when(documentService.similaritySearch(eq("When does it end?"), any(), any())).thenReturn(List.of(new Document("2027")));
+        when(documentService.cachedPromptModel(anyList(), any())).thenReturn(new ChatResponse("In 2027", false));
+
+        documentFacade.promptModel(new ChatRequest("When does it end?", null, null));
+
+        verify(documentService).similaritySearch(eq("When does it end?"), filter.capture(), any());
+        assertNull(filter.getValue());
+    }
+
+    @Test
+    void testBatchQueuesEveryPdfOfTheArchiveAsOneEntry() throws Exception {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+            for (String name : List.of("contracts/a.pdf", "contracts/b.PDF", "notes.txt")) {
+                zip.putNextEntry(new ZipEntry(name));
+                zip.write(name.getBytes());
+                zip.closeEntry();
+            }
+        }
+        MultipartFile zip = new MockMultipartFile("files", "docs.zip", "application/zip", archive.toByteArray());
+        MultipartFile pdf = new MockMultipartFile("files", "c.pdf", "application/pdf", new byte[] { 1 });
+        when(uploadSpool.store(anyString(), any(InputStream.class), eq(-1L))).thenAnswer(call -> Path.of("/spool/" + call.getArgument(0) + ".pdf"));
+        when(uploadSpool.store(anyString(), any(MultipartFile.class))).thenAnswer(call -> Path.of("/spool/" + call.getArgument(0) + ".pdf"));
+
+        // --- ACT ---
+        BatchUploadResponse response = documentFacade.processAndSaveBatchAsync(List.of(zip, pdf), "10.0.0.1", "contracts", false);
+
+        // --- ASSERT ---
+        assertEquals(3, response.jobs().size());
+        assertEquals(List.of("docs.zip/notes.txt"), response.skipped());
+        verify(documentService, times(3)).markQueued(anyString(), any(), eq("10.0.0.1"), any(), eq(response.batchId()));
+        verify(ingestionQueue).submit(any(), eq(response.batchId()), eq("10.0.0.1"), any());
+    }
+
+    @Test
+    void testUploadIsRejectedBeforeSpoolingWhenTheQueueIsFull() {
+        MultipartFile pdf = new MockMultipartFile("file", "c.pdf", "application/pdf", new byte[] { 1 });
+        when(ingestionQueue.reserve()).thenThrow(new QueueFullException("The ingestion queue is full", 30));
+
+        // --- ACT & ASSERT ---
+        assertThrows(QueueFullException.class, () -> documentFacade.processAndSaveDocumentAsync(pdf, "10.0.0.1", null, null));
+        verify(uploadSpool, never()).store(anyString(), any(MultipartFile.class));
+    }
+}
@@ -0,0 +1,255 @@
+package com.davidcerdeiro.documind.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.davidcerdeiro.documind.cache.TextFingerprint;
+import com.davidcerdeiro.documind.concurrency.ConcurrencyLimiter;
+import com.davidcerdeiro.documind.dto.DocumentInfo;
+import com.davidcerdeiro.documind.dto.StoredChunk;
+import com.davidcerdeiro.documind.repository.VectorBulkWriter;
+import com.davidcerdeiro.documind.repository.VectorStoreRepository;
+import com.davidcerdeiro.documind.service.CorpusVersion;
+import com.davidcerdeiro.documind.service.DocumentService;
+import com.davidcerdeiro.documind.service.JobStore;
+import com.davidcerdeiro.documind.service.StageMetrics;
+import com.davidcerdeiro.documind.service.UploadSpool;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// The ingestion pipeline (saveDocument, and processFile end to end on the sample PDF), with the embedding model,
+// the database and the job table stubbed
+@ExtendWith(MockitoExtension.class)
+public class DocumentIngestionUnitTest {
+
+    private static final DocumentInfo DOCUMENT = new DocumentInfo("sample", "general", "sample-test.pdf");
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    @Mock
+    private VectorBulkWriter vectorWriter;
+
+    @Mock
+    private VectorStoreRepository vectorStoreRepository;
+
+    @Mock
+    private JobStore jobStore;
+
+    @Mock
+    private UploadSpool uploadSpool;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final Resource file = new ClassPathResource("pdfs/sample-test.pdf");
+
+    private DocumentService documentService;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        documentService = new DocumentService(null, null, executor, executor, null, new CorpusVersion(), embeddingModel, null,
+                new ConcurrencyLimiter("pgvector", 4, Duration.ofSeconds(5), meterRegistry), null, jobStore, vectorStoreRepository, null,
+                meterRegistry, null, null, uploadSpool, null, vectorWriter, null, null, new StageMetrics(meterRegistry), null);
+        ReflectionTestUtils.setField(documentService, "chunkSize", 100);
+        ReflectionTestUtils.setField(documentService, "chunkOverlap", 0);
+        ReflectionTestUtils.setField(documentService, "extractor", "tika");
+        ReflectionTestUtils.setField(documentService, "incrementalUpdates", true);
+        ReflectionTestUtils.setField(documentService, "batchSize", 2);
+        ReflectionTestUtils.setField(documentService, "maxConcurrentBatches", 2);
+        ReflectionTestUtils.setField(documentService, "pipelineCapacity", 8);
+        ReflectionTestUtils.invokeMethod(documentService, "initEmbeddingPermits");
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testBatchesFinishingOutOfOrderKeepProgressMonotonic() throws Exception {
+        List<List<Integer>> written = Collections.synchronizedList(new ArrayList<>());
+        List<int[]> reported = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        CountDownLatch secondBatchSaved = new CountDownLatch(1);
+
+        // The first batch is only let go once the second one has been written and reported
+        when(embeddingModel.embed(anyList(), any(), any())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            List<Document> batch = invocation.getArgument(0);
+            if (chunkIndex(batch.get(0)) == 0) {
+                firstBatchStarted.countDown();
+                assertTrue(secondBatchSaved.await(5, TimeUnit.SECONDS));
+            } else if (chunkIndex(batch.get(0)) == 2) {
+                assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+            }
+            return embeddings(batch);
+        });
+        doAnswer(invocation -> {
+            List<Document> batch = invocation.getArgument(0);
+            written.add(batch.stream().map(DocumentIngestionUnitTest::chunkIndex).toList());
+            inFlight.decrementAndGet();
+            return null;
+        }).when(vectorWriter).write(anyList(), anyList());
+        doAnswer(invocation -> {
+            reported.add(new int[] { invocation.getArgument(1), invocation.getArgument(2) });
+            secondBatchSaved.countDown();
+            return null;
+        }).when(jobStore).progress(eq("job-1"), anyInt(), anyInt());
+
+        // --- ACT ---
+        documentService.saveDocument("job-1", IntStream.range(0, 7).mapToObj(DocumentIngestionUnitTest::chunk).toList());
+
+        // --- ASSERT ---
+        // batchSize chunks per batch in order, the last one with the rest. The first batch was held until
+        // another one had been saved, which batch goes next depends on the scheduling
+        assertNotEquals(List.of(0, 1), written.get(0));
+        assertEquals(List.of(List.of(0, 1), List.of(2, 3), List.of(4, 5), List.of(6)),
+                written.stream().sorted(Comparator.comparing(batch -> batch.get(0))).toList());
+        // Both permits were taken while the first batch waited, never more
+        assertEquals(2, maxInFlight.get());
+
+        // The second batch finishing first doesn't move the resume watermark past the first one
+        assertEquals(0, reported.get(0)[1]);
+        for (int i = 1; i < reported.size(); i++) {
+            assertTrue(reported.get(i)[0] >= reported.get(i - 1)[0], "Progress should never go backwards");
+            assertTrue(reported.get(i)[1] >= reported.get(i - 1)[1], "Committed chunks should never go backwards");
+        }
+        assertEquals(100, reported.get(reported.size() - 1)[0]);
+        assertEquals(7, reported.get(reported.size() - 1)[1]);
+    }
+
+    @Test
+    void testFailedJobWaitsForItsBatchesInFlight() {
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        // The first batch is still being embedded when the second one fails
+        when(embeddingModel.embed(anyList(), any(), any())).thenAnswer(invocation -> {
+            List<Document> batch = invocation.getArgument(0);
+            if (chunkIndex(batch.get(0)) == 0) {
+                Thread.sleep(300);
+                return embeddings(batch);
+            }
+            throw new IllegalStateException("Ollama is down");
+        });
+        doAnswer(invocation -> events.add("written")).when(vectorWriter).write(anyList(), anyList());
+        doAnswer(invocation -> events.add("progress")).when(jobStore).progress(eq("job-1"), anyInt(), anyInt());
+        doAnswer(invocation -> events.add("failed")).when(jobStore).failed(eq("job-1"), anyString());
+        doAnswer(invocation -> events.add("released")).when(uploadSpool).release(file);
+
+        // --- ACT ---
+        documentService.processFile("job-1", DOCUMENT, file);
+
+        // --- ASSERT ---
+        // Nothing writes chunks or progress for the job once it is marked failed and its file released
+        assertEquals(List.of("written", "progress", "failed", "released"), events);
+    }
+
+    @Test
+    void testJobResumedAfterItsSwapReusesTheSameRows() {
+        // vector_store for the document: the previous version has the same pages under another file name,
+        // plus a chunk the new version no longer has
+        Map<String, StoredChunk> table = new LinkedHashMap<>();
+        List<Document> chunks = documentService.chunkingDocument(file);
+        for (int i = 0; i < chunks.size(); i++) {
+            table.put("old-" + i, stored("old-" + i, "old-job", i, chunks.get(i).getText()));
+        }
+        table.put("old-removed", stored("old-removed", "old-job", chunks.size(), "A clause the new version dropped."));
+
+        List<Collection<String>> keptIds = new ArrayList<>();
+        when(vectorStoreRepository.findOtherVersions("sample", "job-2")).thenAnswer(invocation ->
+                table.values().stream().filter(row -> !"job-2".equals(row.metadata().get(DocumentService.METADATA_JOB_ID))).toList());
+        when(vectorStoreRepository.replaceOtherVersions(eq("sample"), eq("job-2"), anyCollection(), anyMap())).thenAnswer(invocation -> {
+            Collection<String> kept = List.copyOf(invocation.<Collection<String>>getArgument(2));
+            Map<String, Map<String, Object>> moved = invocation.getArgument(3);
+            keptIds.add(kept);
+            moved.forEach((id, metadata) -> table.put(id, new StoredChunk(id, table.get(id).contentHash(), metadata)));
+            int before = table.size();
+            table.values().removeIf(row -> !"job-2".equals(row.metadata().get(DocumentService.METADATA_JOB_ID)) && !kept.contains(row.id()));
+            return before - table.size();
+        });
+
+        // --- ACT ---
+        documentService.processFile("job-2", DOCUMENT, file);
+        // The pod dies after the swap committed and before the job was marked completed: JobRecovery runs it again
+        documentService.processFile("job-2", DOCUMENT, file);
+
+        // --- ASSERT ---
+        // Both runs reuse the same rows and write nothing, so no chunk ends up stored twice
+        verify(vectorWriter, never()).write(anyList(), anyList());
+        assertEquals(2, keptIds.size());
+        assertEquals(keptIds.get(0), keptIds.get(1));
+        assertEquals(chunks.size(), table.size());
+        table.values().forEach(row -> {
+            assertEquals("old-job", row.metadata().get(DocumentService.METADATA_JOB_ID));
+            assertEquals("sample-test.pdf", row.metadata().get(DocumentService.METADATA_FILE_NAME));
+        });
+    }
+
+    private static StoredChunk stored(String id, String jobId, int index, String text) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(DocumentService.METADATA_DOCUMENT_ID, "sample");
+        metadata.put(DocumentService.METADATA_COLLECTION, "general");
+        metadata.put(DocumentService.METADATA_FILE_NAME, "sample-v1.pdf");
+        metadata.put(DocumentService.METADATA_JOB_ID, jobId);
+        metadata.put(DocumentService.METADATA_CHUNK_INDEX, index);
+        metadata.put(DocumentService.METADATA_CONTENT_HASH, TextFingerprint.sha256(text));
+        return new StoredChunk(id, TextFingerprint.sha256(text), metadata);
+    }
+
+    private static Document chunk(int index) {
+        return Document.builder()
+                .text("Chunk " + index)
+                .metadata(DocumentService.METADATA_CHUNK_INDEX, index)
+                .build();
+    }
+
+    private static int chunkIndex(Document chunk) {
+        return (Integer) chunk.getMetadata().get(DocumentService.METADATA_CHUNK_INDEX);
+    }
+
+    private static List<float[]> embeddings(List<Document> batch) {
+        return batch.stream().map(chunk -> new float[] { chunkIndex(chunk) }).toList();
+    }
+}
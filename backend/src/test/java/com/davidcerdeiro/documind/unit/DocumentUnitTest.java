@@ -1,21 +1,34 @@
 package com.davidcerdeiro.documind.unit;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.ai.document.Document;
 import org.springframework.core.io.Resource;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import com.davidcerdeiro.documind.service.DocumentService;
+import com.davidcerdeiro.documind.service.PageStreamingReader;
+import com.davidcerdeiro.documind.service.StageMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @ExtendWith(MockitoExtension.class)
 public class DocumentUnitTest {
+    @Spy
+    private StageMetrics stageMetrics = new StageMetrics(new SimpleMeterRegistry());
+
     @InjectMocks
     private DocumentService documentService;
 
@@ -50,4 +63,58 @@ public class DocumentUnitTest {
             
         assertTrue(containsContent, "The chunks should contain specific content from the PDF");
     }
+
+    @Test
+    void testChunksKeepPageNumber() {
+        Resource testPdfResource = new ClassPathResource("pdfs/sample-test.pdf");
+
+        var chunks = documentService.chunkingDocument(testPdfResource);
+
+        // Pages are split one by one, so every chunk knows the page it comes from
+        chunks.forEach(chunk -> assertTrue(chunk.getMetadata().get(PageStreamingReader.METADATA_PAGE_NUMBER) instanceof Integer,
+            "Every chunk should carry its page number"));
+        assertTrue(chunks.stream().anyMatch(chunk -> Integer.valueOf(1).equals(chunk.getMetadata().get(PageStreamingReader.METADATA_PAGE_NUMBER))),
+            "The first page should produce chunks");
+    }
+
+    @Test
+    void testChunkingRecordsStageMetrics() {
+        Resource testPdfResource = new ClassPathResource("pdfs/sample-test.pdf");
+
+        documentService.chunkingDocument(testPdfResource);
+
+        // Tika once per document, cleaning and splitting once per page
+        assertEquals(1, stageMetrics.read().count());
+        long pages = (long) stageMetrics.pages().count();
+        assertTrue(pages > 0, "Pages should be counted");
+        assertEquals(pages, stageMetrics.clean().count());
+        assertEquals(pages, stageMetrics.split().count());
+    }
+
+    @Test
+    void testParallelExtractionKeepsPageOrder() {
+        Resource testPdfResource = new ClassPathResource("pdfs/sample-test.pdf");
+        List<Integer> tikaPages = pageNumbers(documentService.chunkingDocument(testPdfResource));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ReflectionTestUtils.setField(documentService, "extractor", "parallel");
+            ReflectionTestUtils.setField(documentService, "pagesPerRange", 3);
+            ReflectionTestUtils.setField(documentService, "extractionPool", pool);
+
+            var chunks = documentService.chunkingDocument(testPdfResource);
+            List<Integer> pages = pageNumbers(chunks);
+
+            // Ranges are extracted side by side but reassembled in order, and cover the same pages as Tika
+            assertEquals(pages.stream().sorted().toList(), pages, "Chunks should come in page order");
+            assertEquals(tikaPages.stream().distinct().toList(), pages.stream().distinct().toList());
+            assertTrue(chunks.stream().anyMatch(chunk -> chunk.getText().contains("Tristique")));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static List<Integer> pageNumbers(List<Document> chunks) {
+        return chunks.stream().map(chunk -> (Integer) chunk.getMetadata().get(PageStreamingReader.METADATA_PAGE_NUMBER)).toList();
+    }
 }
@@ -0,0 +1,96 @@
+package com.davidcerdeiro.documind.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.davidcerdeiro.documind.exception.QueueFullException;
+import com.davidcerdeiro.documind.service.IngestionQueue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class IngestionQueueUnitTest {
+
+    // Jobs handed to the workers, run by the test when it decides a worker is done
+    private final List<Runnable> started = new ArrayList<>();
+
+    private final List<String> completed = new ArrayList<>();
+
+    private IngestionQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new IngestionQueue(started::add, new SimpleMeterRegistry(), 1, 3, Duration.ofSeconds(30));
+    }
+
+    @Test
+    void testJobsAreScheduledRoundRobinAcrossUploaders() {
+        submit("a1", "alice");
+        submit("a2", "alice");
+        submit("a3", "alice");
+        submit("b1", "bob");
+
+        // --- ASSERT ---
+        // a1 took the only worker, bob's job goes before alice's backlog
+        assertEquals(1, queue.position("b1"));
+        assertEquals(2, queue.position("a2"));
+        assertEquals(3, queue.position("a3"));
+        assertEquals(0, queue.position("a1"));
+
+        runAll();
+        assertEquals(List.of("a1", "b1", "a2", "a3"), completed);
+    }
+
+    @Test
+    void testUploadIsRejectedWhenTheQueueIsFull() {
+        submit("a1", "alice");
+        submit("a2", "alice");
+        submit("a3", "alice");
+        submit("a4", "alice");
+
+        // --- ACT & ASSERT ---
+        QueueFullException exception = assertThrows(QueueFullException.class, () -> submit("b1", "bob"));
+        assertEquals(30, exception.getRetryAfterSeconds());
+
+        // Room again once a worker picks up the next job
+        started.remove(0).run();
+        submit("b1", "bob");
+        assertEquals(3, queue.queued());
+    }
+
+    @Test
+    void testReservedPlacesCountTowardsCapacity() {
+        submit("a1", "alice");
+        IngestionQueue.Reservation spooling = queue.reserve();
+        IngestionQueue.Reservation failed = queue.reserve();
+        submit("a2", "alice");
+
+        // --- ACT & ASSERT ---
+        // a1 is running, a2 waits and two uploads are still being spooled
+        assertThrows(QueueFullException.class, () -> queue.reserve());
+
+        // A reservation whose upload failed gives its place back, one that was submitted keeps it
+        failed.close();
+        queue.submit(spooling, "b1", "bob", () -> completed.add("b1"));
+        spooling.close();
+        assertEquals(2, queue.queued());
+        queue.reserve();
+        assertThrows(QueueFullException.class, () -> queue.reserve());
+    }
+
+    private void submit(String jobId, String uploader) {
+        queue.submit(jobId, uploader, () -> completed.add(jobId));
+    }
+
+    private void runAll() {
+        while (!started.isEmpty()) {
+            started.remove(0).run();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.davidcerdeiro.documind.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.davidcerdeiro.documind.dto.DocumentInfo;
+import com.davidcerdeiro.documind.exception.DocumentBusyException;
+import com.davidcerdeiro.documind.repository.JobRepository;
+import com.davidcerdeiro.documind.repository.JobRepository.ProgressUpdate;
+import com.davidcerdeiro.documind.repository.JobRepository.StoredJob;
+import com.davidcerdeiro.documind.service.JobStore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class JobStoreUnitTest {
+
+    @Mock
+    private JobRepository jobRepository;
+
+    private JobStore jobStore;
+
+    @BeforeEach
+    void setUp() {
+        jobStore = new JobStore(jobRepository, new SimpleMeterRegistry(), Duration.ofHours(24), Duration.ofMinutes(2));
+    }
+
+    @Test
+    void testProgressIsWrittenOncePerFlush() {
+        when(jobRepository.find("job-1")).thenReturn(Optional.of(new StoredJob("job-1", "PROCESSING", 10, null, 32, "/tmp/doc.pdf", "10.0.0.1", null, "backend-0", Instant.now())));
+
+        // --- ACT ---
+        // Batches finishing out of order, between two flushes
+        jobStore.progress("job-1", 40, 64);
+        jobStore.progress("job-1", 30, 96);
+
+        // --- ASSERT ---
+        verify(jobRepository, never()).updateProgress(anyList());
+        // The instance running the job answers with the progress it hasn't written yet
+        assertEquals(40, jobStore.find("job-1").progress());
+
+        ReflectionTestUtils.invokeMethod(jobStore, "flushProgress");
+        verify(jobRepository).updateProgress(List.of(new ProgressUpdate("job-1", 40, 96)));
+
+        // Nothing left to write
+        ReflectionTestUtils.invokeMethod(jobStore, "flushProgress");
+        verify(jobRepository).updateProgress(List.of());
+    }
+
+    @Test
+    void testFinishedJobDropsPendingProgress() {
+        jobStore.progress("job-1", 90, 320);
+        jobStore.completed("job-1");
+
+        ReflectionTestUtils.invokeMethod(jobStore, "flushProgress");
+
+        verify(jobRepository).updateStatus("job-1", "COMPLETED", 100, null);
+        verify(jobRepository).updateProgress(List.of());
+    }
+
+    @Test
+    void testSecondReplacementOfADocumentInProgressIsRejected() {
+        DocumentInfo document = new DocumentInfo("contract", "general", "contract-v3.pdf");
+        // job-1 is still queued on another replica: the unique index on the unfinished jobs of a document rejects job-2
+        doThrow(new DuplicateKeyException("ingestion_job_unfinished_document_idx"))
+                .when(jobRepository).insert(eq("job-2"), eq(document), any(), any(), any(), any(), any());
+
+        // --- ASSERT ---
+        assertThrows(DocumentBusyException.class, () -> jobStore.create("job-2", document, "10.0.0.1", Path.of("/tmp/job-2"), null));
+    }
+}
@@ -0,0 +1,50 @@
+package com.davidcerdeiro.documind.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import com.davidcerdeiro.documind.service.LexicalReranker;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class LexicalRerankerUnitTest {
+
+    @Test
+    void testCandidateSharingRareQuestionTermsMovesUp() {
+        LexicalReranker reranker = new LexicalReranker(new SimpleMeterRegistry(), 0.5);
+        List<Document> candidates = List.of(
+                chunk("a", "The warranty covers the device for two years", 0.90),
+                chunk("b", "The device ships with a charger and a manual", 0.88),
+                chunk("c", "Error code E-4711 means the battery must be replaced on the device", 0.80),
+                chunk("d", "Cleaning instructions for the screen", 0.70));
+
+        // --- ACT ---
+        List<Document> reranked = reranker.rerank("What does error E-4711 mean?", candidates, 2);
+
+        // --- ASSERT ---
+        assertEquals(List.of("c", "a"), reranked.stream().map(Document::getId).toList());
+    }
+
+    @Test
+    void testWithoutLexicalWeightFirstStageOrderIsKept() {
+        LexicalReranker reranker = new LexicalReranker(new SimpleMeterRegistry(), 0.0);
+        List<Document> candidates = List.of(
+                chunk("a", "Unrelated text", 0.9),
+                chunk("b", "Error E-4711", 0.5),
+                chunk("c", "More unrelated text", 0.5));
+
+        // --- ACT ---
+        List<Document> reranked = reranker.rerank("error E-4711", candidates, 3);
+
+        // --- ASSERT ---
+        assertEquals(List.of("a", "b", "c"), reranked.stream().map(Document::getId).toList());
+    }
+
+    private static Document chunk(String id, String text, double score) {
+        return Document.builder().id(id).text(text).score(score).build();
+    }
+}
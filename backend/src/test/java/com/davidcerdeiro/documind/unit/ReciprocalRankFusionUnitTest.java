@@ -0,0 +1,31 @@
+package com.davidcerdeiro.documind.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import com.davidcerdeiro.documind.service.ReciprocalRankFusion;
+
+public class ReciprocalRankFusionUnitTest {
+
+    @Test
+    void testDocumentsFoundByBothSearchesComeFirst() {
+        List<Document> vector = List.of(chunk("a"), chunk("b"), chunk("c"));
+        List<Document> lexical = List.of(chunk("d"), chunk("c"));
+
+        // --- ACT ---
+        List<Document> fused = ReciprocalRankFusion.fuse(60, 3, vector, lexical);
+
+        // --- ASSERT ---
+        // c: 1/63 + 1/62, a: 1/61, d: 1/61 (ties keep the order of the first list)
+        assertEquals(List.of("c", "a", "d"), fused.stream().map(Document::getId).toList());
+        assertEquals(1.0 / 63 + 1.0 / 62, fused.get(0).getScore(), 1e-9);
+    }
+
+    private static Document chunk(String id) {
+        return Document.builder().id(id).text("Chunk " + id).build();
+    }
+}
@@ -0,0 +1,52 @@
+package com.davidcerdeiro.documind.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import com.davidcerdeiro.documind.cache.RetrievalCache;
+import com.davidcerdeiro.documind.service.CorpusVersion;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class RetrievalCacheUnitTest {
+
+    private CorpusVersion corpusVersion;
+
+    private RetrievalCache retrievalCache;
+
+    @BeforeEach
+    void setUp() {
+        corpusVersion = new CorpusVersion();
+        retrievalCache = new RetrievalCache(corpusVersion, new SimpleMeterRegistry(), 10, Duration.ofMinutes(10));
+    }
+
+    @Test
+    void testWritesInvalidateCachedResults() {
+        List<Document> results = List.of(new Document("Part number AX-100"));
+        retrievalCache.put("part number?", results, corpusVersion.current());
+
+        assertEquals(results, retrievalCache.get("part number?"));
+
+        // A new batch lands in the vector store
+        corpusVersion.increment();
+
+        assertNull(retrievalCache.get("part number?"), "Results computed before a write should not be served");
+    }
+
+    @Test
+    void testResultsOfSearchesRacingAWriteAreNotCached() {
+        long versionAtSearchStart = corpusVersion.current();
+        corpusVersion.increment();
+
+        retrievalCache.put("part number?", List.of(new Document("Old chunk")), versionAtSearchStart);
+
+        assertNull(retrievalCache.get("part number?"));
+    }
+}
@@ -0,0 +1,27 @@
+package com.davidcerdeiro.documind.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import com.davidcerdeiro.documind.exception.InvalidRequestException;
+import com.davidcerdeiro.documind.service.RetrievalProfiles;
+
+public class RetrievalProfilesUnitTest {
+
+    private final RetrievalProfiles profiles = new RetrievalProfiles("balanced", 40, 16, 0.5, 100, 50, 0.45, 400, 50, 0.4, 50000);
+
+    @Test
+    void testProfileIsResolvedByNameOrDefault() {
+        assertEquals("balanced", profiles.resolve(null).name());
+        assertEquals("fast", profiles.resolve(" Fast ").name());
+        assertEquals(50000, profiles.resolve("exact").exactMaxRows());
+        assertEquals(0, profiles.resolve("fast").exactMaxRows());
+    }
+
+    @Test
+    void testUnknownProfileIsRejected() {
+        assertThrows(InvalidRequestException.class, () -> profiles.resolve("precise"));
+    }
+}
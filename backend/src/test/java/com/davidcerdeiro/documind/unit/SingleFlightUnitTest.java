@@ -0,0 +1,112 @@
+package com.davidcerdeiro.documind.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.davidcerdeiro.documind.concurrency.SingleFlight;
+import com.davidcerdeiro.documind.exception.NoDocumentsException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class SingleFlightUnitTest {
+
+    @Test
+    void testConcurrentCallsForTheSameKeyShareOneComputation() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("chat", meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger computations = new AtomicInteger();
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> singleFlight.call("when does it end?", () -> {
+                computations.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "In 2027";
+            }), executor);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            List<CompletableFuture<String>> others = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                others.add(CompletableFuture.supplyAsync(() -> singleFlight.call("when does it end?", () -> {
+                    computations.incrementAndGet();
+                    return "computed again";
+                }), executor));
+            }
+            // Every caller has attached before the computation is let go
+            while (meterRegistry.get("documind.coalescing.requests").tag("outcome", "coalesced").counter().count() < 5) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            // --- ASSERT ---
+            assertEquals("In 2027", first.get(5, TimeUnit.SECONDS));
+            for (CompletableFuture<String> other : others) {
+                assertEquals("In 2027", other.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, computations.get());
+            assertEquals(1, meterRegistry.get("documind.coalescing.requests").tag("outcome", "executed").counter().count());
+
+            // Once finished nothing is remembered, the next call computes again
+            assertEquals("again", singleFlight.call("when does it end?", () -> "again"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testWaitingCallersGetTheFailureOfTheComputation() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("chat", meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        NoDocumentsException failure = new NoDocumentsException("No related info");
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> singleFlight.call("q", () -> {
+                started.countDown();
+                await(release);
+                throw failure;
+            }), executor);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> singleFlight.call("q", () -> "unexpected"), executor);
+            while (meterRegistry.get("documind.coalescing.requests").tag("outcome", "coalesced").counter().count() < 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            // --- ASSERT ---
+            // The exception itself reaches every caller, so the exception handler maps it to the same status
+            Exception firstError = assertThrows(Exception.class, () -> first.get(5, TimeUnit.SECONDS));
+            assertSame(failure, firstError.getCause());
+            Exception secondError = assertThrows(Exception.class, () -> second.get(5, TimeUnit.SECONDS));
+            assertSame(failure, secondError.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.davidcerdeiro.documind.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import com.davidcerdeiro.documind.service.TextNormalizer;
+
+public class TextNormalizerUnitTest {
+
+    @Test
+    void testWhitespaceLineEndingsAndHyphenationAreNormalizedInOnePass() {
+        TextNormalizer normalizer = new TextNormalizer(true, false);
+
+        String page = "  \t Clause 7.1\r\nThe supplier   must de-\r\n   liver within thirty days.  \r\n\r\n\r\n\n"
+                + "Well-known\tterms apply. Ver-\nSION 2  \n  ";
+
+        // --- ASSERT ---
+        // Only a lowercase continuation is joined, and paragraph breaks survive as a single blank line
+        assertEquals("Clause 7.1\nThe supplier must deliver within thirty days.\n\nWell-known terms apply. Ver-\nSION 2",
+                normalizer.normalize(page));
+    }
+
+    @Test
+    void testRunningHeadersAndFootersAreDroppedFromTheSecondPage() {
+        TextNormalizer normalizer = new TextNormalizer(false, true);
+
+        String first = normalizer.normalize("ACME Supply Agreement\nDelivery\nThe supplier delivers.\n\nPage 1 of 3");
+        String second = normalizer.normalize("ACME Supply Agreement\nPayment\nThe customer pays.\nPage 2 of 3");
+        String third = normalizer.normalize("ACME Supply Agreement\nTermination\nEither party may terminate.\n\nPage 3 of 3\n");
+
+        // --- ASSERT ---
+        // Nothing to compare the first page with; afterwards the repeated edges go (digits ignored) and the rest stays
+        assertEquals("ACME Supply Agreement\nDelivery\nThe supplier delivers.\n\nPage 1 of 3", first);
+        assertEquals("Payment\nThe customer pays.", second);
+        assertEquals("Termination\nEither party may terminate.", third);
+    }
+}
@@ -0,0 +1,87 @@
+package com.davidcerdeiro.documind.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import com.davidcerdeiro.documind.exception.ServiceBusyException;
+import com.davidcerdeiro.documind.exception.UploadTooLargeException;
+import com.davidcerdeiro.documind.service.JobStore;
+import com.davidcerdeiro.documind.service.UploadSpool;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class UploadSpoolUnitTest {
+
+    @Mock
+    private JobStore jobStore;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void testUploadsOverTheLimitsAreRejectedWithoutLeavingFiles() throws Exception {
+        UploadSpool spool = spool(DataSize.ofBytes(10), DataSize.ofBytes(15));
+
+        // --- ACT ---
+        Path stored = spool.store("job-1", new ByteArrayInputStream(new byte[8]), -1);
+
+        // --- ASSERT ---
+        assertEquals(8, Files.size(stored));
+        // Body larger than the file limit, with no Content-Length to reject it up front
+        assertThrows(UploadTooLargeException.class, () -> spool.store("job-2", new ByteArrayInputStream(new byte[11]), -1));
+        // Fits the file limit but not the room left in the spool
+        assertThrows(ServiceBusyException.class, () -> spool.store("job-3", new ByteArrayInputStream(new byte[8]), 8));
+        assertFalse(Files.exists(directory.resolve("job-2.pdf")));
+        assertEquals(8, spool.usedBytes());
+
+        spool.release(stored);
+        assertFalse(Files.exists(stored));
+        assertEquals(0, spool.usedBytes());
+    }
+
+    @Test
+    void testStartupKeepsOnlyTheFilesOfUnfinishedJobs() throws Exception {
+        Path needed = Files.write(directory.resolve("job-1.pdf"), new byte[5]);
+        Path orphan = Files.write(directory.resolve("job-2.pdf"), new byte[7]);
+        Files.setLastModifiedTime(orphan, FileTime.from(Instant.now().minus(Duration.ofHours(1))));
+        // Just written by another replica sharing the spool, its job row isn't inserted yet
+        Path incoming = Files.write(directory.resolve("job-3.pdf"), new byte[3]);
+        when(jobStore.unfinishedJobFiles()).thenReturn(Set.of(needed));
+
+        // --- ACT ---
+        UploadSpool spool = spool(DataSize.ofMegabytes(1), DataSize.ofMegabytes(1));
+
+        // --- ASSERT ---
+        assertTrue(Files.exists(needed));
+        assertFalse(Files.exists(orphan));
+        assertTrue(Files.exists(incoming));
+        assertEquals(8, spool.usedBytes());
+    }
+
+    private UploadSpool spool(DataSize maxFileSize, DataSize maxSpoolSize) {
+        UploadSpool spool = new UploadSpool(jobStore, new SimpleMeterRegistry(), directory, maxFileSize, maxSpoolSize,
+                Duration.ofMinutes(10), Duration.ofSeconds(30));
+        ReflectionTestUtils.invokeMethod(spool, "initialize");
+        return spool;
+    }
+}
@@ -0,0 +1,54 @@
+package com.davidcerdeiro.documind.unit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import com.davidcerdeiro.documind.repository.VectorBulkWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class VectorBulkWriterUnitTest {
+
+    @Test
+    void testCopyDataFollowsThePostgresBinaryFormat() throws Exception {
+        VectorBulkWriter writer = new VectorBulkWriter(null, null, new ObjectMapper(), "copy", "512MB");
+        UUID id = UUID.randomUUID();
+        Document chunk = Document.builder().id(id.toString()).text("Clause 4.2").metadata(Map.of("document_id", "doc-1")).build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // --- ACT ---
+        writer.writeCopyData(out, List.of(chunk), List.of(new float[] { 0.5f, -1f }));
+
+        // --- ASSERT ---
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        byte[] signature = new byte[11];
+        in.readFully(signature);
+        assertArrayEquals("PGCOPY\n\377\r\n\0".getBytes(StandardCharsets.ISO_8859_1), signature);
+        assertEquals(0, in.readInt());
+        assertEquals(0, in.readInt());
+
+        assertEquals(4, in.readShort());
+        assertEquals(16, in.readInt());
+        assertEquals(id, new UUID(in.readLong(), in.readLong()));
+        assertEquals("Clause 4.2", new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8));
+        assertEquals("{\"document_id\":\"doc-1\"}", new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8));
+        assertEquals(12, in.readInt());
+        assertEquals(2, in.readShort());
+        assertEquals(0, in.readShort());
+        assertEquals(0.5f, in.readFloat());
+        assertEquals(-1f, in.readFloat());
+
+        assertEquals(-1, in.readShort());
+        assertEquals(0, in.available());
+    }
+}
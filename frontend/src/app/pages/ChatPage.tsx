@@ -40,30 +40,37 @@ export function ChatPage() {
     };
     setMessages((prev) => [...prev, newUserMsg]);
 
+    const aiMsgId = (Date.now() + 1).toString();
+    let answer = "";
+
     try {
-      const answer = await DocuMindService.sendQuestion(userQuestion);
+      // The answer is shown as it is generated; the loading indicator stays until the first token
+      await DocuMindService.streamQuestion(userQuestion, (text) => {
+        const isFirstToken = answer === "";
+        answer += text;
+        if (isFirstToken) {
+          setIsLoading(false);
+          setMessages((prev) => [...prev, { id: aiMsgId, role: "ai", content: answer }]);
+        } else {
+          setMessages((prev) => prev.map((msg) => (msg.id === aiMsgId ? { ...msg, content: answer } : msg)));
+        }
+      });
 
-      if (!answer || !answer.trim()) {
+      if (!answer.trim()) {
         throw new Error("INFO_NOT_FOUND");
       }
 
-      const newAiMsg: Message = {
-        id: (Date.now() + 1).toString(),
-        role: "ai",
-        content: answer,
-      };
-      setMessages((prev) => [...prev, newAiMsg]);
-
     } catch (error: any) {
       console.error("Error en chat:", error);
 
       if (error.message === "INFO_NOT_FOUND") {
+        // Drop any partial answer, the model ended up without information
         const notFoundMsg: Message = {
-          id: (Date.now() + 1).toString(),
+          id: aiMsgId,
           role: "ai",
           content: t("chat.answerNotFound"),
         };
-        setMessages((prev) => [...prev, notFoundMsg]);
+        setMessages((prev) => [...prev.filter((msg) => msg.id !== aiMsgId), notFoundMsg]);
       } else {
         toast.error(t("chat.error.backendUnreachableTitle"), { description: t("chat.error.backendUnreachableDescription") });
       }
@@ -13,6 +13,7 @@ export function WelcomePage() {
   const [selectedFile, setSelectedFile] = useState<File | null>(null);
   const [isLoading, setIsLoading] = useState(false);
   const [progress, setProgress] = useState(0);
+  const [queuePosition, setQueuePosition] = useState<number | null>(null);
 
   const pollIntervalRef = useRef<number | null>(null);
 
@@ -32,6 +33,7 @@ export function WelcomePage() {
 
     setIsLoading(true);
     setProgress(0);
+    setQueuePosition(null);
 
     try {
       const { jobId } = await DocuMindService.uploadDocument(selectedFile);
@@ -40,6 +42,7 @@ export function WelcomePage() {
         try {
           const jobData = await DocuMindService.getJobStatus(jobId);
           setProgress(jobData.progress);
+          setQueuePosition(jobData.status === "QUEUED" ? jobData.queuePosition ?? null : null);
 
           if (jobData.status === "COMPLETED") {
             stopPolling();
@@ -61,10 +64,14 @@ export function WelcomePage() {
         }
       }, 1000);
 
-    } catch (error) {
+    } catch (error: any) {
       console.error(error);
       setIsLoading(false);
-      toast.error(t("welcome.file.uploadError"));
+      if (error.message === "QUEUE_FULL") {
+        toast.error(t("welcome.file.uploadError"), { description: t("welcome.file.queueFull") });
+      } else {
+        toast.error(t("welcome.file.uploadError"));
+      }
     }
   };
 
@@ -85,7 +92,7 @@ export function WelcomePage() {
       {isLoading && (
         <ProgressBar 
             progress={progress} 
-            label={t("welcome.file.loading")} 
+            label={queuePosition !== null ? t("welcome.file.queued", { position: queuePosition }) : t("welcome.file.loading")} 
         />
       )}
 
@@ -23,6 +23,7 @@ export const DocuMindService = {
       if (!response.ok) {
         if (response.status === 504 || response.status === 502) throw new Error("Backend Unreachable");
         if (response.status === 415) throw new Error("Formato no soportado. Solo PDFs.");
+        if (response.status === 429) throw new Error("QUEUE_FULL");
         throw new Error(`Upload error: ${response.status} ${response.statusText}`);
       }
 
@@ -94,6 +95,67 @@ export const DocuMindService = {
     }
   },
 
+  /**
+   * Sends a question and streams the answer as it is generated (Server-Sent Events).
+   * @param question The text of the question.
+   * @param onToken Called with each new piece of the answer, in order.
+   * @returns A promise that resolves when the answer is complete.
+   * @throws Error "INFO_NOT_FOUND" if the AI does not have the answer in the document.
+   */
+  streamQuestion: async (question: string, onToken: (text: string) => void): Promise<void> => {
+    try {
+      const response = await fetch(`${CHAT_API_URL}/stream`, {
+        method: "POST",
+        headers: {
+          "Content-Type": "application/json",
+          Accept: "text/event-stream",
+        },
+        body: JSON.stringify({ question }),
+      });
+
+      if (response.status === 404) {
+        throw new Error("INFO_NOT_FOUND");
+      }
+
+      if (!response.ok || !response.body) {
+         if (response.status === 504 || response.status === 502) {
+            throw new Error("Backend Unreachable");
+         }
+         throw new Error(`Chat error: ${response.status} ${response.statusText}`);
+      }
+
+      const reader = response.body.pipeThrough(new TextDecoderStream()).getReader();
+      let buffer = "";
+
+      while (true) {
+        const { value, done } = await reader.read();
+        if (done) break;
+        buffer += value;
+
+        // Events are separated by a blank line
+        const events = buffer.split(/\r?\n\r?\n/);
+        buffer = events.pop() ?? "";
+
+        for (const rawEvent of events) {
+          let event = "message";
+          const dataLines: string[] = [];
+          for (const line of rawEvent.split(/\r?\n/)) {
+            if (line.startsWith("event:")) event = line.slice(6).trim();
+            else if (line.startsWith("data:")) dataLines.push(line.slice(5));
+          }
+          const data = dataLines.length ? JSON.parse(dataLines.join("\n")) : {};
+
+          if (event === "token") onToken(data.text);
+          else if (event === "not-found") throw new Error("INFO_NOT_FOUND");
+          else if (event === "done") return;
+        }
+      }
+    } catch (error) {
+      console.error("Error in streamQuestion:", error);
+      throw error;
+    }
+  },
+
   /**
    * Resets the current session by clearing the vector store.
    * @returns A promise that resolves when the reset is complete.
@@ -1,5 +1,6 @@
 export interface JobStatusResponse {
-    status: "PROCESSING" | "COMPLETED" | "ERROR" | "NOT_FOUND";
+    status: "QUEUED" | "PROCESSING" | "COMPLETED" | "ERROR" | "NOT_FOUND";
     progress: number;
     message?: string;
+    queuePosition?: number;
 }
\ No newline at end of file